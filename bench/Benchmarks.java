@@ -0,0 +1,294 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+//This class times Route, NearestNeighbour, LocalSearch and GA on generated instances, for repeatable numbers at realistic sizes
+//Each benchmark runs in its own JVM, so one benchmark's JIT profile can't slow down the next, and each run is timed as a few
+//warmup iterations followed by measured iterations of a fixed length, reporting:
+//  ops/s    operations per second, averaged over the measured iterations, with their standard deviation
+//  B/op     bytes allocated per operation by every thread, as the JVM counts them
+//  quality  tour length over the expected optimal length of a uniform instance of the same size, for the solvers
+//usage: Benchmarks [-sizes 100,1000,...] [-layouts uniform,...] [-warmup n] [-iterations n] [-time ms] [-seed n] [-nofork] [benchmark...]
+public final class Benchmarks {
+
+    private static final List<String> BENCHMARKS = Arrays.asList(
+            "route", //construct a Route from a tour, working out its distance
+            "nn", //NearestNeighbour from end to end, including its k-d tree, from NN_STARTS spread starting cities
+            "ls", //LocalSearch of a nearest neighbour tour, failing if improving its result again finds another move
+            "ga.generation", //breed, select and mutate one GA generation
+            "ga.crossover", //one ordered crossover of two random routes
+            "ga.mutation"); //one swap mutation of a random route
+
+    private static final int NN_STARTS           = 100; //starting cities tried by nn, every city would take hours at 100k cities
+    private static final long GA_GENES_IN_MEMORY = 20_000_000; //GA population is cut so population times cities stays under this
+
+    private static volatile double sink; //every operation's result is added here, so the JIT can't drop the work as unused
+
+    //one operation to be timed, built over an instance before timing starts
+    private interface Benchmark {
+        double run();
+
+        default double quality() {
+            return Double.NaN;
+        } //tour length of the last run over the expected tour length, or NaN when the benchmark builds no tour
+    }
+
+    private List<Integer> sizes       = Arrays.asList(100, 1_000, 10_000, 100_000);
+    private List<String> layouts      = Arrays.asList("uniform", "clustered", "grid");
+    private List<String> benchmarks   = new ArrayList<String>(); //benchmarks to run, every one when none are named
+    private int warmupIterations      = 3;
+    private int measurementIterations = 5;
+    private long iterationMillis      = 1_000;
+    private long seed                 = 42; //seed of the generated instances and of every random choice made by the benchmarks
+    private boolean fork              = true;
+    private boolean header            = true;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Benchmarks options = new Benchmarks();
+        List<String> passOn = new ArrayList<String>(); //options handed to each forked JVM
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-sizes":
+                    options.sizes = new ArrayList<Integer>();
+                    for(String size : args[i + 1].split(",")) {
+                        options.sizes.add(Integer.parseInt(size));
+                    }
+                    break;
+                case "-layouts":
+                    options.layouts = Arrays.asList(args[i + 1].toLowerCase(Locale.ROOT).split(","));
+                    break;
+                case "-warmup":
+                    options.warmupIterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-iterations":
+                    options.measurementIterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-time":
+                    options.iterationMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "-seed":
+                    options.seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "-nofork":
+                    options.fork = false;
+                    continue;
+                case "-noheader":
+                    options.header = false;
+                    continue;
+                default:
+                    if(!BENCHMARKS.contains(args[i])) {
+                        throw new IllegalArgumentException("Unknown benchmark " + args[i] + ", expected one of " + BENCHMARKS);
+                    }
+                    options.benchmarks.add(args[i]);
+                    continue;
+            }
+            passOn.add(args[i]);
+            passOn.add(args[++i]);
+        }
+        if(options.benchmarks.isEmpty()) {
+            options.benchmarks.addAll(BENCHMARKS);
+        }
+
+        if(options.header) {
+            System.out.println(String.format(Locale.ROOT, "%-14s %-10s %8s %14s %12s %14s %8s",
+                    "Benchmark", "Layout", "Cities", "ops/s", "+- stdev", "B/op", "quality"));
+        }
+        for(String benchmark : options.benchmarks) {
+            if(options.fork) {
+                runForked(benchmark, passOn);
+            } else {
+                options.run(benchmark);
+            }
+        }
+    }
+
+    //run one benchmark in a new JVM with the same class path and options, its rows are printed straight to this JVM's output
+    private static void runForked(String benchmark, List<String> passOn) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments()); //keep heap size and other JVM flags
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Benchmarks.class.getName());
+        command.addAll(passOn);
+        command.add("-nofork");
+        command.add("-noheader");
+        command.add(benchmark);
+        int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if(exitCode != 0) {
+            System.out.println(benchmark + " failed with exit code " + exitCode);
+        }
+    }
+
+    private void run(String name) {
+        for(String layoutName : layouts) {
+            InstanceGenerator.Layout layout = InstanceGenerator.Layout.valueOf(layoutName.toUpperCase(Locale.ROOT));
+            for(int numOfCities : sizes) {
+                Distances distances = new Distances(InstanceGenerator.generate(layout, numOfCities, seed));
+                Benchmark benchmark = create(name, distances);
+
+                for(int i = 0; i < warmupIterations; i++) {
+                    iteration(benchmark);
+                }
+                System.gc(); //so garbage left by warmup isn't collected during measurement
+                double[] opsPerSecond = new double[measurementIterations];
+                long allocated        = 0;
+                long ops              = 0;
+                for(int i = 0; i < measurementIterations; i++) {
+                    long allocatedBefore = AllocationCounter.allThreads();
+                    long[] result        = iteration(benchmark);
+                    allocated           += AllocationCounter.allThreads() - allocatedBefore;
+                    ops                 += result[0];
+                    opsPerSecond[i]      = result[0] * 1e9 / result[1];
+                }
+                System.out.println(String.format(Locale.ROOT, "%-14s %-10s %8d %14.3f %12.3f %14.1f %8.4f",
+                        name, layoutName, numOfCities, mean(opsPerSecond), standardDeviation(opsPerSecond),
+                        (double)allocated / ops, benchmark.quality()));
+            }
+        }
+    }
+
+    //build a benchmark over an instance, doing all of its setup so only the operation itself is timed
+    private Benchmark create(String name, Distances distances) {
+        int numOfCities         = distances.size();
+        double expected         = InstanceGenerator.expectedTourLength(numOfCities);
+        SplittableRandom random = new SplittableRandom(seed);
+        SolverConfig config     = new SolverConfig().setSeed(seed)
+                .setPopulationSize((int)Math.max(2, Math.min(2_000, GA_GENES_IN_MEMORY / numOfCities) & ~1));
+        switch(name) {
+            case "route": {
+                int[][] tours = new int[16][];
+                for(int i = 0; i < tours.length; i++) {
+                    tours[i] = randomTour(numOfCities, random);
+                }
+                return new Benchmark() {
+                    private int next;
+
+                    @Override
+                    public double run() {
+                        return new Route(tours[next++ & 15], distances).getDistance();
+                    }
+                };
+            }
+            case "nn":
+                return new Benchmark() {
+                    private double distance = Double.NaN;
+
+                    @Override
+                    public double run() {
+                        NearestNeighbour nearestNeighbour = new NearestNeighbour(distances, NN_STARTS, NearestNeighbour.Starts.SPREAD);
+                        distance = nearestNeighbour.solve(config, SolverListener.NONE).getDistance();
+                        return distance;
+                    }
+
+                    @Override
+                    public double quality() {
+                        return distance / expected;
+                    }
+                };
+            case "ls": {
+                LocalSearch localSearch = new LocalSearch(distances, new CandidateLists(distances, CandidateLists.DEFAULT_SIZE));
+                Route start             = new NearestNeighbour(distances, NN_STARTS, NearestNeighbour.Starts.SPREAD).solve(config, SolverListener.NONE);
+                Route improved          = localSearch.improve(start);
+                if(localSearch.improve(improved) != improved) { //improve promises no move is left, so a second call must change nothing
+                    throw new IllegalStateException("Local search left an improving move in a tour of " + numOfCities + " cities");
+                }
+                return new Benchmark() {
+                    private double distance = Double.NaN;
+
+                    @Override
+                    public double run() {
+                        distance = localSearch.improve(start).getDistance();
+                        return distance;
+                    }
+
+                    @Override
+                    public double quality() {
+                        return distance / expected;
+                    }
+                };
+            }
+            case "ga.generation": {
+                GA geneticAlgo = new GA(distances);
+                geneticAlgo.start(config, random, config.getPopulationSize());
+                return new Benchmark() {
+                    @Override
+                    public double run() {
+                        geneticAlgo.evolve(1, Long.MAX_VALUE);
+                        return geneticAlgo.getBestRoute().getDistance();
+                    }
+
+                    @Override
+                    public double quality() {
+                        return geneticAlgo.getBestRoute().getDistance() / expected;
+                    }
+                };
+            }
+            default: {
+                GA geneticAlgo = new GA(distances);
+                geneticAlgo.start(config, random, 2); //only sets up the run's random source and working arrays
+                Route father   = new Route(randomTour(numOfCities, random), distances);
+                Route mother   = new Route(randomTour(numOfCities, random), distances);
+                if(name.equals("ga.crossover")) {
+                    return () -> geneticAlgo.breed(father, mother).getDistance();
+                }
+                return () -> geneticAlgo.mutate(father).getDistance();
+            }
+        }
+    }
+
+    //run operations until the iteration's time is up, always at least one, returning the number of operations and the nanoseconds taken
+    private long[] iteration(Benchmark benchmark) {
+        long iterationNanos = iterationMillis * 1_000_000;
+        long startTime      = System.nanoTime();
+        long ops            = 0;
+        long elapsed;
+        double sum          = 0;
+        do {
+            sum += benchmark.run();
+            ops++;
+            elapsed = System.nanoTime() - startTime;
+        } while(elapsed < iterationNanos);
+        sink += sum;
+        return new long[] {ops, elapsed};
+    }
+
+    private static int[] randomTour(int numOfCities, SplittableRandom random) {
+        int[] tour = new int[numOfCities];
+        for(int i = 0; i < numOfCities; i++) {
+            tour[i] = i;
+        }
+        for(int i = numOfCities - 1; i > 0; i--) {
+            int swapWith   = random.nextInt(i + 1);
+            int city       = tour[i];
+            tour[i]        = tour[swapWith];
+            tour[swapWith] = city;
+        }
+        return tour;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for(double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double standardDeviation(double[] values) {
+        if(values.length < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double sum  = 0;
+        for(double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sum / (values.length - 1));
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+//This class generates instances for the benchmarks, the same layout, size and seed always give the same cities
+//Every layout fills a square of side SIDE, so tour lengths can be compared with the expected length of a random uniform tour
+public final class InstanceGenerator {
+
+    public static final double SIDE = 1_000_000; //cities lie in the square from (0, 0) to (SIDE, SIDE)
+
+    //how cities are spread over the square
+    public enum Layout {
+        UNIFORM, //anywhere in the square with equal chance
+        CLUSTERED, //in tight groups around random centres, about 100 cities to a group
+        GRID //on the points of a square grid, filled row by row
+    }
+
+    private static final int CITIES_PER_CLUSTER = 100;
+
+    private InstanceGenerator() {
+    }
+
+    //generate numOfCities cities in the given layout
+    public static ArrayList<City> generate(Layout layout, int numOfCities, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        ArrayList<City> cities  = new ArrayList<City>(numOfCities);
+        switch(layout) {
+            case UNIFORM:
+                for(int i = 0; i < numOfCities; i++) {
+                    cities.add(new City(i, String.valueOf(i + 1), random.nextDouble() * SIDE, random.nextDouble() * SIDE));
+                }
+                break;
+            case CLUSTERED:
+                int numOfClusters = Math.max(1, numOfCities / CITIES_PER_CLUSTER);
+                double[] centres  = new double[2 * numOfClusters];
+                for(int i = 0; i < centres.length; i++) {
+                    centres[i] = random.nextDouble() * SIDE;
+                }
+                double spread = SIDE / (8 * Math.sqrt(numOfClusters)); //groups take up a small share of the square, whatever their number
+                for(int i = 0; i < numOfCities; i++) {
+                    int cluster = random.nextInt(numOfClusters);
+                    double x    = clamp(centres[2 * cluster] + gaussian(random) * spread);
+                    double y    = clamp(centres[2 * cluster + 1] + gaussian(random) * spread);
+                    cities.add(new City(i, String.valueOf(i + 1), x, y));
+                }
+                break;
+            default:
+                int perRow     = (int)Math.ceil(Math.sqrt(numOfCities));
+                double spacing = SIDE / perRow;
+                for(int i = 0; i < numOfCities; i++) {
+                    cities.add(new City(i, String.valueOf(i + 1), (i % perRow) * spacing, (i / perRow) * spacing));
+                }
+        }
+        return cities;
+    }
+
+    //expected length of the shortest tour through n random uniform cities in the square, from the Beardwood-Halton-Hammersley
+    //constant, dividing a tour's length by this gives a rough measure of its quality that doesn't depend on size
+    public static double expectedTourLength(int numOfCities) {
+        return 0.7124 * Math.sqrt(numOfCities * SIDE * SIDE);
+    }
+
+    //write an instance as a plain file, one "name x y" city per line, so it can be solved by SolvingTSP
+    //usage: InstanceGenerator <uniform|clustered|grid> <cities> <seed> <file>
+    public static void main(String[] args) throws IOException {
+        if(args.length != 4) {
+            System.out.println("usage: InstanceGenerator <uniform|clustered|grid> <cities> <seed> <file>");
+            return;
+        }
+        Layout layout = Layout.valueOf(args[0].toUpperCase(Locale.ROOT));
+        ArrayList<City> cities = generate(layout, Integer.parseInt(args[1]), Long.parseLong(args[2]));
+        try(BufferedWriter writer = Files.newBufferedWriter(Paths.get(args[3]), StandardCharsets.UTF_8)) {
+            for(City city : cities) {
+                writer.write(city.getName() + " " + city.getxCoordinate() + " " + city.getyCoordinate());
+                writer.newLine();
+            }
+        }
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    } //Box-Muller, SplittableRandom has no nextGaussian
+
+    private static double clamp(double coordinate) {
+        return Math.max(0, Math.min(SIDE, coordinate));
+    }
+}
@@ -0,0 +1,31 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+//This class reads how many bytes threads have allocated, from the counters HotSpot keeps for every thread
+//JVMs without those counters report 0, so differences between two readings are 0 as well
+public final class AllocationCounter {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean SUPPORTED    = THREADS instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean)THREADS).isThreadAllocatedMemorySupported();
+
+    private AllocationCounter() {
+    }
+
+    //bytes allocated so far by the calling thread
+    public static long currentThread() {
+        return SUPPORTED ? ((com.sun.management.ThreadMXBean)THREADS).getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    //bytes allocated so far by every live thread, including the fork-join pool's
+    public static long allThreads() {
+        if(!SUPPORTED) {
+            return 0;
+        }
+        long total = 0;
+        for(long allocated : ((com.sun.management.ThreadMXBean)THREADS).getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            total += Math.max(0, allocated); //threads that ended in the meantime report -1
+        }
+        return total;
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//This class holds the k nearest cities to every city, the only cities local search considers connecting a city to
+public final class CandidateLists {
+
+    public static final int DEFAULT_SIZE = 8; //8 nearest cities are enough for 2-opt and Or-opt to find nearly every improving move
+
+    private static final int CITIES_PER_TASK = 4_096; //cities handled by each task while the lists are built
+
+    private final int size; //number of candidates kept for every city
+    private final int[] candidates; //candidates of city i are at positions i * size to (i + 1) * size, nearest first
+
+    //find the k nearest cities to every city, in parallel over the fork-join pool
+    public CandidateLists(Distances distances, int k) {
+        int numOfCities = distances.size();
+        this.size       = Math.max(0, Math.min(k, numOfCities - 1));
+        this.candidates = new int[numOfCities * size];
+        if(size > 0) {
+            KdTree kdTree = distances.hasCoordinates() ? new KdTree(distances) : null; //cities without coordinates are compared one by one
+            ForkJoinPool.commonPool().invoke(new Build(distances, kdTree, 0, numOfCities));
+        }
+    }
+
+    //carry the lists of a previous instance over to one with some of its cities removed and new ones added, where
+    //previousIndexes gives each city's index in the previous instance, or -1 for a new city, lists that lost a removed city
+    //are refilled from the lists of their other candidates and of the removed city, and each new city's list is found
+    //among every city before the new city joins the lists of its candidates it is nearer to than their last candidate,
+    //so only the lists around a change are worked out again
+    public CandidateLists(CandidateLists previous, int[] previousIndexes, Distances distances) {
+        int numOfCities = distances.size();
+        this.size       = Math.max(0, Math.min(previous.size, numOfCities - 1));
+        this.candidates = new int[numOfCities * size];
+        if(size < previous.size) { //too few cities left for lists as long as before, every list is worked out again
+            if(size > 0) {
+                ForkJoinPool.commonPool().invoke(new Build(distances, distances.hasCoordinates() ? new KdTree(distances) : null, 0, numOfCities));
+            }
+            return;
+        }
+        int[] newIndexes = new int[previous.candidates.length / Math.max(1, previous.size)]; //index of each previous city, -1 if removed
+        Arrays.fill(newIndexes, -1);
+        for(int city = 0; city < numOfCities; city++) {
+            if(previousIndexes[city] >= 0) {
+                newIndexes[previousIndexes[city]] = city;
+            }
+        }
+
+        double[] lengths = new double[size];
+        for(int city = 0; city < numOfCities; city++) {
+            int from = previousIndexes[city];
+            if(from < 0) {
+                continue; //new cities are listed once every city still there has its list
+            }
+            int found   = 0;
+            boolean cut = false; //whether a removed city was dropped from the list
+            for(int i = 0; i < size; i++) {
+                int candidate = newIndexes[previous.get(from, i)];
+                if(candidate < 0) {
+                    cut = true;
+                } else {
+                    candidates[city * size + found++] = candidate;
+                }
+            }
+            if(cut) {
+                for(int i = 0; i < found; i++) { //lengths are only needed to refill the list
+                    lengths[i] = distances.between(city, get(city, i));
+                }
+                //the nearest cities left are likely to be in the lists of the cities that were nearest before
+                for(int i = 0; i < size; i++) {
+                    int via = previous.get(from, i);
+                    for(int j = 0; j < size; j++) {
+                        int candidate = newIndexes[previous.get(via, j)];
+                        if(candidate >= 0 && candidate != city) {
+                            found = offer(city, candidate, distances.between(city, candidate), lengths, found);
+                        }
+                    }
+                }
+                if(found < size) {
+                    scanNearest(distances, city); //not enough cities around, rare enough to look through every city
+                }
+            }
+        }
+
+        for(int city = 0; city < numOfCities; city++) {
+            if(previousIndexes[city] < 0) {
+                scanNearest(distances, city);
+                for(int i = 0; i < size; i++) {
+                    int other = get(city, i);
+                    if(previousIndexes[other] >= 0 || other < city) { //only cities whose lists are already filled
+                        for(int j = 0; j < size; j++) {
+                            lengths[j] = distances.between(other, get(other, j));
+                        }
+                        offer(other, city, distances.between(other, city), lengths, size);
+                    }
+                }
+            }
+        }
+    }
+
+    //wrap candidate lists that were already worked out, such as ones read back from an instance cache
+    public CandidateLists(int size, int[] candidates) {
+        this.size       = size;
+        this.candidates = candidates;
+    }
+
+    public int size() {
+        return size;
+    } //get number of candidates per city
+
+    public int get(int city, int i) {
+        return candidates[city * size + i];
+    } //get the i-th nearest candidate of a city
+
+    public int[] toArray() {
+        return candidates.clone();
+    } //get a copy of every candidate list, laid out one city after another
+
+    //put a city into another city's list, whose first found entries are filled and have the given lengths, keeping the list
+    //sorted and dropping its last entry when it is full, unless the city is already in it or is no nearer than every entry,
+    //returns the number of entries filled afterwards
+    private int offer(int city, int candidate, double length, double[] lengths, int found) {
+        int offset = city * size;
+        if(found == size && length >= lengths[size - 1]) {
+            return found;
+        }
+        for(int i = 0; i < found; i++) {
+            if(candidates[offset + i] == candidate) {
+                return found;
+            }
+        }
+        int i = found < size ? found++ : size - 1;
+        while(i > 0 && lengths[i - 1] > length) {
+            lengths[i]             = lengths[i - 1];
+            candidates[offset + i] = candidates[offset + i - 1];
+            i--;
+        }
+        lengths[i]             = length;
+        candidates[offset + i] = candidate;
+        return found;
+    }
+
+    //fill a city's list by looking at every other city, keeping the list sorted by inserting each closer city into place
+    private void scanNearest(Distances distances, int city) {
+        double[] lengths = new double[size];
+        int found        = 0;
+        for(int other = 0; other < distances.size(); other++) {
+            if(other != city) {
+                found = offer(city, other, distances.between(city, other), lengths, found);
+            }
+        }
+    }
+
+    //This task fills the candidate lists for a range of cities, splitting the range while it is too large
+    @SuppressWarnings("serial") //tasks are never serialized
+    private final class Build extends RecursiveAction {
+        private final Distances distances;
+        private final KdTree kdTree;
+        private final int from;
+        private final int to;
+
+        Build(Distances distances, KdTree kdTree, int from, int to) {
+            this.distances = distances;
+            this.kdTree    = kdTree;
+            this.from      = from;
+            this.to        = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > CITIES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Build(distances, kdTree, from, mid), new Build(distances, kdTree, mid, to));
+                return;
+            }
+            if(kdTree == null) {
+                for(int city = from; city < to; city++) {
+                    scanNearest(distances, city);
+                }
+                return;
+            }
+            KdTree.Search search = kdTree.newSearch(); //every task needs its own search, queries keep state in it
+            for(int city = from; city < to; city++) {
+                search.nearest(city, size, candidates, city * size);
+            }
+        }
+    }
+}
@@ -0,0 +1,493 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+
+//This class loads cities from a file, either one city per line as "name x y" or a TSPLIB .tsp/.atsp file
+//Plain files may separate columns with whitespace, commas, pipes or semicolons
+//Names and keywords are read as UTF-8, numbers are parsed straight from the bytes
+//TSPLIB files may give coordinates in a NODE_COORD_SECTION, whose straight-line distances are rounded to the nearest
+//whole number as TSPLIB's EUC_2D asks, while plain files keep their exact straight-line distances,
+//or explicit weights in an EDGE_WEIGHT_SECTION in any of the TSPLIB matrix formats
+//Other TSPLIB edge weight types, such as GEO, ATT or CEIL_2D, are refused rather than solved with the wrong distances
+//Cities with the same coordinates as an earlier city are dropped as duplicates
+public final class CityLoader {
+
+    private static final int BUFFER_SIZE = 1 << 16; //bytes read from the file at a time
+
+    //first words of a TSPLIB file, any other first word is taken as the name of a city in a plain file
+    private static final HashSet<String> TSPLIB_KEYWORDS = new HashSet<String>(Arrays.asList(
+            "NAME", "TYPE", "COMMENT", "DIMENSION", "EDGE_WEIGHT_TYPE", "EDGE_WEIGHT_FORMAT", "NODE_COORD_TYPE",
+            "DISPLAY_DATA_TYPE", "CAPACITY", "NODE_COORD_SECTION", "EDGE_WEIGHT_SECTION"));
+
+    private final PrintStream log; //where to print each city and duplicate as it is loaded, null to print nothing
+
+    //load without printing anything
+    public CityLoader() {
+        this(null);
+    }
+
+    //print every city and every duplicate found to log, as they are loaded
+    public CityLoader(PrintStream log) {
+        this.log = log;
+    }
+
+    public TspInstance load(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Tokenizer tokens = new Tokenizer(channel);
+            String fileName  = path.getFileName().toString();
+            if(TSPLIB_KEYWORDS.contains(tokens.peekWord().toUpperCase(Locale.ROOT))) {
+                return loadTsplib(tokens, fileName);
+            }
+            return loadCities(tokens, fileName);
+        }
+    }
+
+    //read a plain file, one "name x y" city per line, ignoring blank lines and any columns after the third
+    private TspInstance loadCities(Tokenizer tokens, String fileName) throws IOException {
+        ArrayList<City> cities = new ArrayList<City>();
+        CoordinateSet seen     = new CoordinateSet();
+        int duplicates         = 0;
+        while(!tokens.atEnd()) {
+            if(!tokens.atLineEnd()) {
+                String name        = tokens.nextToken(); //set first column as city name
+                double xCoordinate = tokens.nextDouble(); //set second column as the city's x coordinate
+                double yCoordinate = tokens.nextDouble(); //set third column as the city's y coordinate
+                duplicates        += addCity(cities, seen, name, xCoordinate, yCoordinate);
+            }
+            tokens.nextLine();
+        }
+        return new TspInstance(fileName, cities, null, duplicates); //distances are built when first asked for
+    }
+
+    private TspInstance loadTsplib(Tokenizer tokens, String fileName) throws IOException {
+        String name            = fileName;
+        String type            = "TSP";
+        String weightType      = "EUC_2D";
+        String weightFormat    = "FULL_MATRIX";
+        int dimension          = -1;
+        ArrayList<City> cities = new ArrayList<City>();
+        double[] weights       = null; //explicit weights, as every full row
+        double[] display       = null; //x and y of each city from the DISPLAY_DATA_SECTION
+        int duplicates         = 0;
+
+        while(!tokens.atEnd()) {
+            if(tokens.atLineEnd()) {
+                tokens.nextLine();
+                continue;
+            }
+            String keyword = tokens.nextToken().toUpperCase(Locale.ROOT);
+            switch(keyword) {
+                case "NAME":
+                    name = tokens.restOfLine();
+                    break;
+                case "TYPE":
+                    type = tokens.restOfLine().toUpperCase(Locale.ROOT);
+                    break;
+                case "EDGE_WEIGHT_TYPE":
+                    weightType = tokens.restOfLine().toUpperCase(Locale.ROOT);
+                    break;
+                case "EDGE_WEIGHT_FORMAT":
+                    weightFormat = tokens.restOfLine().toUpperCase(Locale.ROOT);
+                    break;
+                case "DIMENSION":
+                    dimension = (int)tokens.nextDouble();
+                    tokens.nextLine();
+                    break;
+                case "NODE_COORD_SECTION":
+                    tokens.nextLine();
+                    CoordinateSet seen = new CoordinateSet();
+                    for(int i = 0; i < requireDimension(dimension, keyword); i++) {
+                        skipBlankLines(tokens);
+                        String id          = tokens.nextToken();
+                        double xCoordinate = tokens.nextDouble();
+                        double yCoordinate = tokens.nextDouble();
+                        duplicates        += addCity(cities, seen, id, xCoordinate, yCoordinate);
+                        tokens.nextLine(); //skip a third coordinate, if the instance has one
+                    }
+                    break;
+                case "DISPLAY_DATA_SECTION":
+                    tokens.nextLine();
+                    display = new double[2 * requireDimension(dimension, keyword)];
+                    for(int i = 0; i < dimension; i++) {
+                        skipBlankLines(tokens);
+                        tokens.nextToken(); //cities are listed in order, so the id isn't needed
+                        display[2 * i]     = tokens.nextDouble();
+                        display[2 * i + 1] = tokens.nextDouble();
+                        tokens.nextLine();
+                    }
+                    break;
+                case "EDGE_WEIGHT_SECTION":
+                    tokens.nextLine();
+                    weights = readWeights(tokens, requireDimension(dimension, keyword), weightFormat);
+                    break;
+                case "EOF":
+                    return buildInstance(name, type, weightType, cities, weights, display, duplicates);
+                default:
+                    tokens.nextLine(); //COMMENT and anything this loader doesn't use
+            }
+        }
+        return buildInstance(name, type, weightType, cities, weights, display, duplicates);
+    }
+
+    private TspInstance buildInstance(String name, String type, String weightType, ArrayList<City> cities,
+                                      double[] weights, double[] display, int duplicates) throws IOException {
+        if(!"EUC_2D".equals(weightType) && !"EXPLICIT".equals(weightType)) {
+            throw new IOException(name + ": unsupported EDGE_WEIGHT_TYPE " + weightType + ", only EUC_2D and EXPLICIT are supported");
+        }
+        if(weights == null) {
+            if(cities.isEmpty() && !"EXPLICIT".equals(weightType)) {
+                throw new IOException(name + ": no NODE_COORD_SECTION or EDGE_WEIGHT_SECTION found");
+            }
+            boolean rounded = "EUC_2D".equals(weightType); //TSPLIB's EUC_2D distances are nint of the straight-line distance
+            return new TspInstance(name, cities, null, rounded, duplicates, null);
+        }
+
+        //explicit instances are named by their position, and placed at their display coordinates when there are any
+        int dimension = (int)Math.round(Math.sqrt(weights.length));
+        cities.clear();
+        for(int i = 0; i < dimension; i++) {
+            double xCoordinate = display == null ? Double.NaN : display[2 * i];
+            double yCoordinate = display == null ? Double.NaN : display[2 * i + 1];
+            cities.add(new City(i, String.valueOf(i + 1), xCoordinate, yCoordinate));
+            if(log != null) {
+                log.println("" + (i + 1) + "|" + xCoordinate + "|" + yCoordinate); //print out cities
+            }
+        }
+        if(type.startsWith("ATSP")) {
+            return new TspInstance(name, cities, new Distances(cities, weights, false), 0);
+        }
+        double[] lowerTriangle = new double[dimension * (dimension - 1) / 2]; //symmetric weights only need one triangle
+        for(int a = 1, k = 0; a < dimension; a++) {
+            for(int b = 0; b < a; b++) {
+                lowerTriangle[k++] = weights[a * dimension + b];
+            }
+        }
+        return new TspInstance(name, cities, new Distances(cities, lowerTriangle, true), 0);
+    }
+
+    //read explicit weights in a TSPLIB format into every full row, filling both halves for the triangular formats
+    private static double[] readWeights(Tokenizer tokens, int dimension, String format) throws IOException {
+        double[] weights = new double[dimension * dimension];
+        boolean diagonal = format.contains("DIAG");
+        //a column-wise upper triangle lists the same pairs in the same order as a row-wise lower triangle, and so on
+        boolean upper    = format.startsWith("UPPER_ROW") || format.startsWith("UPPER_DIAG_ROW")
+                || format.startsWith("LOWER_COL") || format.startsWith("LOWER_DIAG_COL");
+        if(format.equals("FULL_MATRIX")) {
+            for(int i = 0; i < weights.length; i++) {
+                weights[i] = tokens.nextNumber();
+            }
+        } else if(format.endsWith("_ROW") || format.endsWith("_COL")) {
+            for(int a = 0; a < dimension; a++) {
+                int from = upper ? (diagonal ? a : a + 1) : 0;
+                int to   = upper ? dimension : (diagonal ? a + 1 : a);
+                for(int b = from; b < to; b++) {
+                    double weight             = tokens.nextNumber();
+                    weights[a * dimension + b] = weight;
+                    weights[b * dimension + a] = weight;
+                }
+            }
+        } else {
+            throw new IOException("Unsupported EDGE_WEIGHT_FORMAT " + format);
+        }
+        tokens.nextLine();
+        return weights;
+    }
+
+    //add a city unless one with the same coordinates has already been added, returning 1 for a duplicate and 0 otherwise
+    private int addCity(ArrayList<City> cities, CoordinateSet seen, String name, double xCoordinate, double yCoordinate) {
+        if(log != null) {
+            log.println(""+ name + "|" + xCoordinate + "|" + yCoordinate); //print out cities
+        }
+        if(seen.add(xCoordinate, yCoordinate)) {
+            cities.add(new City(cities.size(), name, xCoordinate, yCoordinate)); //Add coordinates as a new City since it doesn't already exist
+            return 0;
+        }
+        if(log != null) {
+            log.println("Duplicate Found: "+ name + "|" + xCoordinate + "|" + yCoordinate); //print out duplicate city
+        }
+        return 1;
+    }
+
+    private static int requireDimension(int dimension, String section) throws IOException {
+        if(dimension < 0) {
+            throw new IOException(section + " found before DIMENSION");
+        }
+        return dimension;
+    }
+
+    private static void skipBlankLines(Tokenizer tokens) throws IOException {
+        while(!tokens.atEnd() && tokens.atLineEnd()) {
+            tokens.nextLine();
+        }
+    }
+
+    //This class is an open-addressing hash set of coordinate pairs, kept as raw bits so no objects are created per city
+    private static final class CoordinateSet {
+        private long[] xBits = new long[1024];
+        private long[] yBits = new long[1024];
+        private boolean[] used = new boolean[1024];
+        private int size;
+
+        //add a pair, returning false if it was already there
+        boolean add(double xCoordinate, double yCoordinate) {
+            if(size * 2 >= used.length) {
+                grow();
+            }
+            long x = Double.doubleToLongBits(xCoordinate + 0.0); //adding 0.0 turns -0.0 into 0.0, so both are the same coordinate
+            long y = Double.doubleToLongBits(yCoordinate + 0.0);
+            int mask = used.length - 1;
+            for(int slot = hash(x, y) & mask; ; slot = (slot + 1) & mask) {
+                if(!used[slot]) {
+                    used[slot]  = true;
+                    xBits[slot] = x;
+                    yBits[slot] = y;
+                    size++;
+                    return true;
+                }
+                if(xBits[slot] == x && yBits[slot] == y) {
+                    return false;
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldX       = xBits;
+            long[] oldY       = yBits;
+            boolean[] oldUsed = used;
+            xBits = new long[oldUsed.length * 2];
+            yBits = new long[oldUsed.length * 2];
+            used  = new boolean[oldUsed.length * 2];
+            int mask = used.length - 1;
+            for(int i = 0; i < oldUsed.length; i++) {
+                if(oldUsed[i]) {
+                    int slot = hash(oldX[i], oldY[i]) & mask;
+                    while(used[slot]) {
+                        slot = (slot + 1) & mask;
+                    }
+                    used[slot]  = true;
+                    xBits[slot] = oldX[i];
+                    yBits[slot] = oldY[i];
+                }
+            }
+        }
+
+        private static int hash(long x, long y) {
+            long h = (x * 0x9E3779B97F4A7C15L) ^ (y + 0x632BE59BD9B4E019L) * 0xBF58476D1CE4E5B9L;
+            return (int)(h ^ (h >>> 31) ^ (h >>> 17));
+        }
+    }
+
+    //This class splits the file into tokens straight from a byte buffer filled from the channel, numbers are parsed
+    //in place and only names and keywords become Strings
+    private static final class Tokenizer {
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+        private final FileChannel channel;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        private byte[] text = new byte[64]; //bytes of the token being read, decoded as UTF-8 once it is whole
+        private int textLength;
+        private int position;
+        private int limit;
+        private int lineNumber = 1;
+
+        Tokenizer(FileChannel channel) throws IOException {
+            this.channel = channel;
+            fill();
+        }
+
+        //get the first word of the file without consuming it, the buffer always holds the start of the file at this point
+        String peekWord() {
+            int i = position;
+            while(i < limit && isSeparator(buffer[i]) || i < limit && buffer[i] == '\n') {
+                i++;
+            }
+            int start = i;
+            while(i < limit && !isSeparator(buffer[i]) && buffer[i] != '\n') {
+                i++;
+            }
+            return new String(buffer, start, i - start, StandardCharsets.UTF_8);
+        }
+
+        boolean atEnd() throws IOException {
+            return peek() < 0;
+        } //check if the whole file has been read
+
+        //skip separators, then check if the line has nothing more on it
+        boolean atLineEnd() throws IOException {
+            skipSeparators();
+            int c = peek();
+            return c < 0 || c == '\n';
+        }
+
+        //skip past the end of the current line
+        void nextLine() throws IOException {
+            int c;
+            while((c = peek()) >= 0) {
+                position++;
+                if(c == '\n') {
+                    lineNumber++;
+                    return;
+                }
+            }
+        }
+
+        //read the next token on the line, separators are all ASCII so they never split a UTF-8 character
+        String nextToken() throws IOException {
+            skipSeparators();
+            textLength = 0;
+            int c;
+            while((c = peek()) >= 0 && c != '\n' && !isSeparator((byte)c)) {
+                append(c);
+                position++;
+            }
+            if(textLength == 0) {
+                throw error("expected a value");
+            }
+            return new String(text, 0, textLength, StandardCharsets.UTF_8);
+        }
+
+        //read what is left of the line, trimmed, and move to the next line
+        String restOfLine() throws IOException {
+            skipSeparators();
+            textLength = 0;
+            int c;
+            while((c = peek()) >= 0 && c != '\n') {
+                append(c);
+                position++;
+            }
+            nextLine();
+            return new String(text, 0, textLength, StandardCharsets.UTF_8).trim();
+        }
+
+        //read the next number, which may be on a later line
+        double nextNumber() throws IOException {
+            while(atLineEnd()) {
+                if(atEnd()) {
+                    throw error("expected a number");
+                }
+                nextLine();
+            }
+            return nextDouble();
+        }
+
+        //read the next number on the line, digits are added up as they are read and scaled once at the end
+        double nextDouble() throws IOException {
+            skipSeparators();
+            boolean negative = false;
+            int c = peek();
+            if(c == '-' || c == '+') {
+                negative = c == '-';
+                position++;
+            }
+            long mantissa   = 0;
+            int digits      = 0; //significant digits held in the mantissa
+            int exponent    = 0; //power of ten the mantissa is scaled by
+            boolean any     = false;
+            boolean inexact = false; //more digits than a long can hold exactly
+            while((c = peek()) >= '0' && c <= '9') {
+                any = true;
+                position++;
+                if(digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits  += mantissa == 0 ? 0 : 1;
+                } else {
+                    exponent++;
+                    inexact |= c != '0';
+                }
+            }
+            if(c == '.') {
+                position++;
+                while((c = peek()) >= '0' && c <= '9') {
+                    any = true;
+                    position++;
+                    if(digits < 18) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits  += mantissa == 0 ? 0 : 1;
+                        exponent--;
+                    } else {
+                        inexact |= c != '0';
+                    }
+                }
+            }
+            if(!any) {
+                throw error("expected a number");
+            }
+            if(c == 'e' || c == 'E') {
+                position++;
+                boolean negativeExponent = false;
+                c = peek();
+                if(c == '-' || c == '+') {
+                    negativeExponent = c == '-';
+                    position++;
+                }
+                int value = 0;
+                while((c = peek()) >= '0' && c <= '9') {
+                    position++;
+                    value = Math.min(value * 10 + (c - '0'), 100_000);
+                }
+                exponent += negativeExponent ? -value : value;
+            }
+            double result;
+            if(!inexact && mantissa < (1L << 53) && Math.abs(exponent) <= 22) {
+                //both the mantissa and the power of ten are exact doubles, so one multiply or divide rounds correctly
+                result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            } else {
+                result = Double.parseDouble(mantissa + "E" + exponent); //rare, loses digits past the 18th like any long mantissa
+            }
+            return negative ? -result : result;
+        }
+
+        private void append(int c) {
+            if(textLength == text.length) {
+                text = Arrays.copyOf(text, 2 * textLength);
+            }
+            text[textLength++] = (byte)c;
+        } //add a byte to the token being read
+
+        private void skipSeparators() throws IOException {
+            int c;
+            while((c = peek()) >= 0 && isSeparator((byte)c)) {
+                position++;
+            }
+        }
+
+        private int peek() throws IOException {
+            if(position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position] & 0xFF;
+        }
+
+        private boolean fill() throws IOException {
+            wrapped.clear();
+            int read;
+            do {
+                read = channel.read(wrapped);
+            } while(read == 0);
+            position = 0;
+            limit    = Math.max(read, 0);
+            return read > 0;
+        }
+
+        private IOException error(String message) {
+            return new IOException("Line " + lineNumber + ": " + message);
+        }
+
+        private static boolean isSeparator(byte c) {
+            return c == ' ' || c == '\t' || c == '\r' || c == ',' || c == '|' || c == ';' || c == ':';
+        }
+    }
+}
@@ -0,0 +1,360 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+//This class solves instances too large to search as a whole, such as a million cities, by splitting them into clusters
+//  partition: the plane is split at the median city across its wider side, again and again, until every cluster holds at
+//             most clusterSize cities, as KdTree splits it
+//  solve:     every cluster is solved on its own, in parallel, by the cluster solver then 2-opt / Or-opt local search
+//  stitch:    clusters are visited in the order of a short tour through their centres, each cluster's tour is opened next to
+//             the city where the previous cluster's path ended and joined to it
+//  repair:    the tour around every join, the second half of one cluster and the first half of the next, is improved as an
+//             instance of its own and put back wherever it is now shorter
+//Only the clusters and the tour are held in memory beyond the instance, so a million cities fit in a few GB of heap
+//Cities are split by their coordinates, so instances given as explicit weights are solved whole by the cluster solver
+public final class DecompositionSolver implements Solver {
+
+    public static final int DEFAULT_CLUSTER_SIZE = 1_000; //clusters of up to 1000 cities keep their distances as doubles
+    public static final int CLUSTER_STARTS       = 16; //nearest neighbour starting cities tried in each cluster by default
+
+    private final Distances distances;
+    private final int clusterSize; //most cities in a cluster
+    private final Function<Distances, Solver> clusterSolver; //makes the solver for each cluster, called from several threads
+    private final boolean repair; //whether the tour around every join is improved once the clusters are stitched
+    private Route bestRoute;
+
+    //split into clusters of up to DEFAULT_CLUSTER_SIZE cities, solve each with nearest neighbour from CLUSTER_STARTS
+    //starting cities, and repair the joins
+    public DecompositionSolver(Distances distances) {
+        this(distances, DEFAULT_CLUSTER_SIZE, cluster -> new NearestNeighbour(cluster, CLUSTER_STARTS, NearestNeighbour.Starts.SPREAD), true);
+    }
+
+    public DecompositionSolver(Distances distances, int clusterSize, Function<Distances, Solver> clusterSolver, boolean repair) {
+        if(clusterSize < 8) {
+            throw new IllegalArgumentException("Cluster size must be at least 8, was " + clusterSize);
+        }
+        this.distances     = distances;
+        this.clusterSize   = clusterSize;
+        this.clusterSolver = clusterSolver;
+        this.repair        = repair;
+    }
+
+    //the config's time budget is for the whole run: each cluster's solver is given the time left when it starts, and once
+    //the deadline passes clusters are left without local search and joins aren't repaired, so the run ends soon after it
+    //clusters are given the config without its target distance, which is for the whole tour, and joins aren't repaired
+    //once the stitched route reaches the target
+    //the listener is told about the stitched route as iteration 0 and the repaired route as iteration 1
+    @Override
+    public Route solve(SolverConfig config, SolverListener listener) {
+        int numOfCities = distances.size();
+        if(numOfCities <= 2) {
+            System.out.println("Not enough cities"); //no route to build, as for nearest neighbour
+            return null;
+        }
+        long startTime = System.nanoTime();
+        long deadline  = config.deadline(startTime);
+        if(numOfCities <= clusterSize || !distances.hasCoordinates()) {
+            int[] whole = new int[numOfCities];
+            for(int i = 0; i < numOfCities; i++) {
+                whole[i] = i;
+            }
+            bestRoute = new Route(solveCluster(whole, config, deadline), distances); //one cluster is the whole tour, so the target applies
+            listener.onImprovement(bestRoute, 0, System.nanoTime() - startTime);
+            return bestRoute;
+        }
+
+        //every cluster is a range of the partitioned cities
+        int[] cities = new int[numOfCities];
+        for(int i = 0; i < numOfCities; i++) {
+            cities[i] = i;
+        }
+        List<int[]> ranges = new ArrayList<int[]>();
+        partition(cities, 0, numOfCities, ranges);
+        int numOfClusters  = ranges.size();
+        int[][] clusters   = new int[numOfClusters][];
+        for(int c = 0; c < numOfClusters; c++) {
+            int[] range = ranges.get(c);
+            clusters[c] = new int[range[1] - range[0]];
+            System.arraycopy(cities, range[0], clusters[c], 0, clusters[c].length);
+        }
+
+        int[][] clusterTours       = new int[numOfClusters][];
+        SolverConfig clusterConfig = config.copy().setTargetGap(0, 0); //a cluster's tour is far shorter than the whole tour's target
+        IntStream.range(0, numOfClusters).parallel().forEach(c -> clusterTours[c] = solveCluster(clusters[c], clusterConfig, deadline));
+
+        int[] tour     = new int[numOfCities];
+        int[] starts   = stitch(clusterTours, clusterOrder(clusterTours), tour);
+        bestRoute      = new Route(tour, distances);
+        listener.onImprovement(bestRoute, 0, System.nanoTime() - startTime);
+        if(repair && !config.reachedTarget(bestRoute) && System.nanoTime() < deadline) {
+            repairJoins(tour, starts, deadline);
+            bestRoute = new Route(tour, distances);
+            listener.onImprovement(bestRoute, 1, System.nanoTime() - startTime);
+        }
+        return bestRoute;
+    }
+
+    //get the route found by the last run
+    public Route getBestRoute() {
+        return bestRoute;
+    }
+
+    //split the cities in the range at the median across the wider side of their bounding box until each part is small enough
+    private void partition(int[] cities, int from, int to, List<int[]> ranges) {
+        if(to - from <= clusterSize) {
+            ranges.add(new int[] {from, to});
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for(int i = from; i < to; i++) {
+            minX = Math.min(minX, distances.getxCoordinate(cities[i]));
+            minY = Math.min(minY, distances.getyCoordinate(cities[i]));
+            maxX = Math.max(maxX, distances.getxCoordinate(cities[i]));
+            maxY = Math.max(maxY, distances.getyCoordinate(cities[i]));
+        }
+        int mid = (from + to) >>> 1;
+        select(cities, from, to - 1, mid, maxX - minX >= maxY - minY);
+        partition(cities, from, mid, ranges); //halves follow each other, so clusters next in the list are next in the plane
+        partition(cities, mid, to, ranges);
+    }
+
+    //partially sort cities between left and right so the one at position k is in its sorted place
+    private void select(int[] cities, int left, int right, int k, boolean byX) {
+        while(right > left) {
+            double pivot = coordinate(cities[(left + right) >>> 1], byX);
+            int i = left;
+            int j = right;
+            while(i <= j) {
+                while(coordinate(cities[i], byX) < pivot) {
+                    i++;
+                }
+                while(coordinate(cities[j], byX) > pivot) {
+                    j--;
+                }
+                if(i <= j) {
+                    int city    = cities[i];
+                    cities[i++] = cities[j];
+                    cities[j--] = city;
+                }
+            }
+            if(k <= j) {
+                right = j;
+            } else if(k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    //solve the given cities as an instance of their own in the time left before the deadline, returning their tour as
+    //indexes of the whole instance
+    private int[] solveCluster(int[] cluster, SolverConfig config, long deadline) {
+        Distances clusterDistances = distances.hasCoordinates() ? subInstance(cluster) : distances; //only coordinates are split
+        SolverConfig timeLeft      = config.copy().setTimeBudget(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        Route route                = clusterSolver.apply(clusterDistances).solve(timeLeft, SolverListener.NONE);
+        if(System.nanoTime() < deadline) {
+            route = new LocalSearch(clusterDistances, new CandidateLists(clusterDistances, CandidateLists.DEFAULT_SIZE)).improve(route);
+        }
+        int[] tour = new int[cluster.length];
+        for(int i = 0; i < tour.length; i++) {
+            tour[i] = cluster[route.getTour()[i]];
+        }
+        return tour;
+    }
+
+    //order to visit the clusters in, along a tour through their centres
+    private int[] clusterOrder(int[][] clusterTours) {
+        int numOfClusters = clusterTours.length;
+        int[] order       = new int[numOfClusters];
+        for(int c = 0; c < numOfClusters; c++) {
+            order[c] = c; //partition order, already runs through neighbouring clusters
+        }
+        if(numOfClusters <= 3) {
+            return order; //every order of three clusters is the same cycle
+        }
+        ArrayList<City> centres = new ArrayList<City>(numOfClusters);
+        for(int c = 0; c < numOfClusters; c++) {
+            centres.add(new City(c, Integer.toString(c), centreX(clusterTours[c]), centreY(clusterTours[c])));
+        }
+        Distances centreDistances = new Distances(centres);
+        Route route               = new NearestNeighbour(centreDistances, CLUSTER_STARTS, NearestNeighbour.Starts.SPREAD)
+                .solve(new SolverConfig(), SolverListener.NONE);
+        return new LocalSearch(centreDistances, new CandidateLists(centreDistances, CandidateLists.DEFAULT_SIZE)).improve(route).getTour();
+    }
+
+    //join the cluster tours into one tour, in the given order of clusters, each cluster's tour is entered at its city nearest
+    //to where the previous one ended and left from whichever of that city's two tour neighbours is nearer the next cluster,
+    //returns the position in the tour where each cluster, in visiting order, begins
+    private int[] stitch(int[][] clusterTours, int[] order, int[] tour) {
+        int numOfClusters = order.length;
+        int[] starts      = new int[numOfClusters];
+        int[] last        = clusterTours[order[numOfClusters - 1]];
+        int firstEntry    = nearestIn(clusterTours[order[0]], centreX(last), centreY(last));
+        int entry         = firstEntry;
+        int position      = 0;
+        for(int i = 0; i < numOfClusters; i++) {
+            int[] clusterTour = clusterTours[order[i]];
+            int length        = clusterTour.length;
+            int[] next        = clusterTours[order[(i + 1) % numOfClusters]];
+            double nextX      = i + 1 < numOfClusters ? centreX(next) : distances.getxCoordinate(firstEntry);
+            double nextY      = i + 1 < numOfClusters ? centreY(next) : distances.getyCoordinate(firstEntry);
+
+            //forwards from the entry the path ends just before it, backwards it ends just after it
+            int at            = indexOf(clusterTour, entry);
+            int forwardEnd    = clusterTour[(at + length - 1) % length];
+            int backwardEnd   = clusterTour[(at + 1) % length];
+            boolean forwards  = squaredDistance(forwardEnd, nextX, nextY) <= squaredDistance(backwardEnd, nextX, nextY);
+            starts[i]         = position;
+            for(int j = 0; j < length; j++) {
+                tour[position++] = clusterTour[forwards ? (at + j) % length : (at - j + length) % length];
+            }
+            if(i + 1 < numOfClusters) {
+                int end = forwards ? forwardEnd : backwardEnd;
+                entry   = nearestIn(next, distances.getxCoordinate(end), distances.getyCoordinate(end));
+            }
+        }
+        return starts;
+    }
+
+    //improve the stretch of tour around every join, the second half of the cluster before it and the first half of the one
+    //after it, stretches next to each other share an end city, so every other one is repaired at a time
+    private void repairJoins(int[] tour, int[] starts, long deadline) {
+        int numOfClusters = starts.length;
+        int numOfCities   = tour.length;
+        int[] from        = new int[numOfClusters]; //first position of each stretch, wrapping round the end of the tour
+        int[] lengths     = new int[numOfClusters];
+        for(int i = 0; i < numOfClusters; i++) {
+            int previousStart = starts[(i + numOfClusters - 1) % numOfClusters];
+            int previousEnd   = i > 0 ? starts[i] : numOfCities;
+            int nextEnd       = i + 1 < numOfClusters ? starts[i + 1] : numOfCities;
+            int before        = previousEnd - previousStart - (previousEnd - previousStart) / 2; //second half of the previous cluster
+            from[i]           = (starts[i] - before + numOfCities) % numOfCities;
+            lengths[i]        = before + (nextEnd - starts[i]) / 2;
+        }
+        //with an odd number of clusters the last stretch sits next to the first, so it gets a pass of its own
+        int paired = numOfClusters - numOfClusters % 2;
+        IntStream.range(0, paired / 2).parallel().forEach(i -> repairStretch(tour, from[2 * i], lengths[2 * i], deadline));
+        IntStream.range(0, paired / 2).parallel().forEach(i -> repairStretch(tour, from[2 * i + 1], lengths[2 * i + 1], deadline));
+        if(paired < numOfClusters) {
+            repairStretch(tour, from[numOfClusters - 1], lengths[numOfClusters - 1], deadline);
+        }
+    }
+
+    //solve the cities on a stretch of the tour as a cycle of their own, then open the cycle where it best joins the cities
+    //either side of the stretch, and put it back if it is shorter than the stretch it replaces, stretches reached after the
+    //deadline are left as they are
+    private void repairStretch(int[] tour, int from, int length, long deadline) {
+        if(length < 8 || System.nanoTime() >= deadline) {
+            return;
+        }
+        int numOfCities = tour.length;
+        int[] stretch   = new int[length];
+        for(int i = 0; i < length; i++) {
+            stretch[i] = tour[(from + i) % numOfCities];
+        }
+        int before = tour[(from + numOfCities - 1) % numOfCities];
+        int after  = tour[(from + length) % numOfCities];
+
+        Distances stretchDistances = subInstance(stretch);
+        int[] path                 = new int[length];
+        for(int i = 0; i < length; i++) {
+            path[i] = i;
+        }
+        Route cycle = new LocalSearch(stretchDistances, new CandidateLists(stretchDistances, CandidateLists.DEFAULT_SIZE))
+                .improve(new Route(path, stretchDistances));
+        double oldLength = distances.between(before, stretch[0]) + distances.between(stretch[length - 1], after);
+        for(int i = 1; i < length; i++) {
+            oldLength += stretchDistances.between(i - 1, i);
+        }
+
+        //cutting the edge from c[i] to c[i + 1] leaves a path from c[i + 1] round to c[i], which can be walked either way
+        int[] cities      = cycle.getTour();
+        double bestLength = oldLength;
+        int bestCut       = -1;
+        boolean reversed  = false;
+        for(int i = 0; i < length; i++) {
+            int u           = cities[i];
+            int v           = cities[(i + 1) % length];
+            double open     = cycle.getDistance() - stretchDistances.between(u, v);
+            double forwards = open + distances.between(before, stretch[v]) + distances.between(stretch[u], after);
+            double backward = open + distances.between(before, stretch[u]) + distances.between(stretch[v], after);
+            if(Math.min(forwards, backward) < bestLength - 1e-7) {
+                bestLength = Math.min(forwards, backward);
+                bestCut    = i;
+                reversed   = backward < forwards;
+            }
+        }
+        if(bestCut < 0) {
+            return; //the stretch was already as short as the repaired cycle could make it
+        }
+        for(int j = 0; j < length; j++) {
+            int city = reversed ? cities[(bestCut - j + length) % length] : cities[(bestCut + 1 + j) % length];
+            tour[(from + j) % numOfCities] = stretch[city];
+        }
+    }
+
+    //instance made of the given cities only, city i of it is cities[i] of the whole instance
+    private Distances subInstance(int[] cities) {
+        ArrayList<City> sub = new ArrayList<City>(cities.length);
+        for(int i = 0; i < cities.length; i++) {
+            City city = distances.getCity(cities[i]);
+            sub.add(new City(i, city.getName(), city.getxCoordinate(), city.getyCoordinate()));
+        }
+        return new Distances(sub, false, distances.isRounded());
+    }
+
+    //city of the cluster nearest to a point, looked for one by one
+    private int nearestIn(int[] cluster, double x, double y) {
+        int nearest            = cluster[0];
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for(int city : cluster) {
+            double distance = squaredDistance(city, x, y);
+            if(distance < nearestDistance) {
+                nearest         = city;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    private double centreX(int[] cluster) {
+        double sum = 0;
+        for(int city : cluster) {
+            sum += distances.getxCoordinate(city);
+        }
+        return sum / cluster.length;
+    }
+
+    private double centreY(int[] cluster) {
+        double sum = 0;
+        for(int city : cluster) {
+            sum += distances.getyCoordinate(city);
+        }
+        return sum / cluster.length;
+    }
+
+    private double squaredDistance(int city, double x, double y) {
+        double dx = distances.getxCoordinate(city) - x;
+        double dy = distances.getyCoordinate(city) - y;
+        return dx * dx + dy * dy;
+    }
+
+    private double coordinate(int city, boolean byX) {
+        return byX ? distances.getxCoordinate(city) : distances.getyCoordinate(city);
+    }
+
+    private static int indexOf(int[] cities, int city) {
+        for(int i = 0; i < cities.length; i++) {
+            if(cities[i] == city) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
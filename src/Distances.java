@@ -0,0 +1,203 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//This class holds the distance between every pair of cities, it is built once after the cities are loaded
+public final class Distances {
+
+    private static final int DOUBLE_MATRIX_CITIES = 2_048; //up to this many cities, distances are kept as doubles
+    private static final int MAX_MATRIX_CITIES    = 20_000; //above this many cities, distances are computed on demand
+    private static final int CACHE_BITS           = 16; //on demand distances are cached in a table of 2^16 entries
+
+    private final City[] cities; //every city, in the position given by its index
+    private final double[] xCoordinates;
+    private final double[] yCoordinates;
+    private final double[] doubleMatrix; //lower triangle of the distance matrix, for small instances
+    private final float[] floatMatrix; //lower triangle of the distance matrix, for medium instances
+    private final AtomicLongArray cache; //recently computed distances, each entry packs a key tag and a float distance
+    private final double[] fullMatrix; //every row of the distance matrix, for asymmetric instances given as explicit weights
+    private final boolean hasCoordinates; //whether every city has coordinates that give its distances, never so for explicit instances
+    private final boolean explicit; //whether distances were given rather than worked out from coordinates
+    private final boolean rounded; //whether distances from coordinates are rounded to the nearest whole number, as TSPLIB's EUC_2D
+
+    //work out distances from the cities' coordinates
+    public Distances(List<City> cities) {
+        this(cities, false);
+    }
+
+    //work out distances from the cities' coordinates, only as they are asked for when onDemand is set, so building the
+    //table takes time in proportion to the number of cities rather than to the number of pairs, such as for an instance
+    //that keeps changing a few cities at a time
+    public Distances(List<City> cities, boolean onDemand) {
+        this(cities, onDemand, false);
+    }
+
+    //as above, rounding each distance to the nearest whole number when rounded is set, as TSPLIB's EUC_2D instances are measured
+    public Distances(List<City> cities, boolean onDemand, boolean rounded) {
+        int numOfCities     = cities.size();
+        this.cities         = new City[numOfCities];
+        this.xCoordinates   = new double[numOfCities];
+        this.yCoordinates   = new double[numOfCities];
+        this.hasCoordinates = copyCities(cities);
+        this.fullMatrix     = null;
+        this.explicit       = false;
+        this.rounded        = rounded;
+
+        long entries = (long)numOfCities * (numOfCities - 1) / 2; //number of distinct pairs of cities
+        if(!onDemand && numOfCities <= DOUBLE_MATRIX_CITIES) {
+            this.doubleMatrix = new double[(int)entries];
+            this.floatMatrix  = null;
+            this.cache        = null;
+            for(int a = 1; a < numOfCities; a++) {
+                int row = triangularIndex(a);
+                for(int b = 0; b < a; b++) {
+                    doubleMatrix[row + b] = compute(a, b);
+                }
+            }
+        } else if(!onDemand && numOfCities <= MAX_MATRIX_CITIES && entries * Float.BYTES < Runtime.getRuntime().maxMemory() / 4) {
+            this.doubleMatrix = null;
+            this.floatMatrix  = new float[(int)entries];
+            this.cache        = null;
+            for(int a = 1; a < numOfCities; a++) {
+                int row = triangularIndex(a);
+                for(int b = 0; b < a; b++) {
+                    floatMatrix[row + b] = (float)compute(a, b);
+                }
+            }
+        } else {
+            //too many cities to hold every pair, or asked not to, fall back to computing distances as they are asked for
+            this.doubleMatrix = null;
+            this.floatMatrix  = null;
+            this.cache        = new AtomicLongArray(1 << CACHE_BITS);
+        }
+    }
+
+    //take distances as given, such as the explicit weights of a TSPLIB instance, cities may have NaN coordinates when there are none
+    //a symmetric matrix is given as its lower triangle, row by row without the diagonal, an asymmetric one as every full row
+    //coordinates are only kept for display, the weights needn't follow them, so spatial searches are never used on these cities
+    public Distances(List<City> cities, double[] matrix, boolean symmetric) {
+        int numOfCities     = cities.size();
+        this.cities         = new City[numOfCities];
+        this.xCoordinates   = new double[numOfCities];
+        this.yCoordinates   = new double[numOfCities];
+        copyCities(cities);
+        this.hasCoordinates = false;
+        this.doubleMatrix   = symmetric ? matrix : null;
+        this.fullMatrix     = symmetric ? null : matrix;
+        this.floatMatrix    = null;
+        this.cache          = null;
+        this.explicit       = true;
+        this.rounded        = false;
+        long expected       = symmetric ? (long)numOfCities * (numOfCities - 1) / 2 : (long)numOfCities * numOfCities;
+        if(matrix.length != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " distances for " + numOfCities + " cities, got " + matrix.length);
+        }
+    }
+
+    //get distance from the city with index a to the city with index b
+    public double between(int a, int b) {
+        if(a == b) {
+            return 0;
+        }
+        if(fullMatrix != null) {
+            return fullMatrix[a * cities.length + b];
+        }
+        if(a < b) { //only the lower triangle is stored, so the larger index always selects the row
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        if(doubleMatrix != null) {
+            return doubleMatrix[triangularIndex(a) + b];
+        }
+        if(floatMatrix != null) {
+            return floatMatrix[triangularIndex(a) + b];
+        }
+        return cached(a, b);
+    }
+
+    public double between(City from, City to) {
+        return between(from.getIndex(), to.getIndex());
+    } //get distance between two cities
+
+    public int size() {
+        return cities.length;
+    } //get the number of cities
+
+    public boolean isSymmetric() {
+        return fullMatrix == null;
+    } //check if the distance from a to b is always the distance from b to a
+
+    public boolean hasCoordinates() {
+        return hasCoordinates;
+    } //check if every city has coordinates its distances are worked out from, so spatial searches can be used
+
+    public boolean isExplicit() {
+        return explicit;
+    } //check if distances were given, rather than worked out from the cities' coordinates
+
+    public boolean isRounded() {
+        return rounded;
+    } //check if distances worked out from coordinates are rounded to the nearest whole number
+
+    public City getCity(int index) {
+        return cities[index];
+    } //get city by its index
+
+    public List<City> getCities() {
+        ArrayList<City> list = new ArrayList<City>(cities.length);
+        Collections.addAll(list, cities);
+        return Collections.unmodifiableList(list);
+    } //get every city, in index order
+
+    public double getxCoordinate(int index) {
+        return xCoordinates[index];
+    } //get the x coordinate of a city by its index
+
+    public double getyCoordinate(int index) {
+        return yCoordinates[index];
+    } //get the y coordinate of a city by its index
+
+    //copy cities into the city table and their coordinates, returning whether every coordinate is a number
+    private boolean copyCities(List<City> cities) {
+        boolean allCoordinates = true;
+        for(int i = 0; i < this.cities.length; i++) {
+            City city = cities.get(i);
+            if(city.getIndex() != i) {
+                throw new IllegalArgumentException("City " + city.getName() + " has index " + city.getIndex() + ", expected " + i);
+            }
+            this.cities[i]       = city;
+            this.xCoordinates[i] = city.getxCoordinate();
+            this.yCoordinates[i] = city.getyCoordinate();
+            allCoordinates      &= !Double.isNaN(city.getxCoordinate()) && !Double.isNaN(city.getyCoordinate());
+        }
+        return allCoordinates;
+    }
+
+    //look up distance in the cache, computing and storing it on a miss
+    private double cached(int a, int b) {
+        long key  = (long)a * (a - 1) / 2 + b; //unique number for the pair a > b
+        int slot  = (int)(key & ((1 << CACHE_BITS) - 1)); //low bits of the key select the slot
+        long tag  = (key >>> CACHE_BITS) + 1; //high bits of the key are kept to recognise the pair, 0 marks an empty slot
+        long entry = cache.get(slot); //atomic, so threads sharing the cache never see half an entry, plain longs may be torn on 32-bit JVMs
+        if((entry >>> 32) == tag) {
+            return Float.intBitsToFloat((int)entry);
+        }
+        float distance = (float)compute(a, b); //kept at float precision so hits and misses return the same value
+        cache.lazySet(slot, (tag << 32) | (Float.floatToIntBits(distance) & 0xFFFFFFFFL)); //no fence needed, a lost entry is only computed again
+        return distance;
+    }
+
+    private double compute(int a, int b) {
+        double deltaX = xCoordinates[a] - xCoordinates[b];
+        double deltaY = yCoordinates[a] - yCoordinates[b];
+        double distance = Math.sqrt((deltaX * deltaX) + (deltaY * deltaY));
+        return rounded ? Math.floor(distance + 0.5) : distance; //TSPLIB's nint
+    }
+
+    //position of the first entry of row a in the lower triangle
+    private static int triangularIndex(int a) {
+        return (int)((long)a * (a - 1) / 2);
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//This class keeps the best distinct routes found so far, up to a fixed number of them
+//Routes are held in a min-heap by fitness, so the least fit elite is always at the top, ready to be replaced by a better route
+//Each route is also kept as a hash of its tour, read from city 0 in the direction of its smaller neighbour, so a tour found again
+//from another starting city or travelled backwards is recognised as the same tour and isn't added twice
+public final class EliteArchive {
+
+    private final Route[] heap; //elites, least fit first
+    private final long[] hashes; //tour hash of the elite at the same position in the heap
+    private int size;
+    private Route bestRoute; //the fittest elite, kept aside so it never needs looking for
+
+    public EliteArchive(int capacity) {
+        this.heap   = new Route[capacity];
+        this.hashes = new long[capacity];
+    }
+
+    //add a route if it is fitter than the least fit elite and isn't already kept, returning whether it was added
+    public boolean offer(Route route) {
+        if(size == heap.length && route.getFitness() <= heap[0].getFitness()) {
+            return false; //archive is full of routes at least as fit
+        }
+        long hash = tourHash(route.getTour());
+        for(int i = 0; i < size; i++) {
+            if(hashes[i] == hash) {
+                return false; //same tour is already an elite
+            }
+        }
+        if(size < heap.length) {
+            siftUp(size++, route, hash);
+        } else {
+            siftDown(0, route, hash); //replace the least fit elite
+        }
+        if(bestRoute == null || route.getFitness() > bestRoute.getFitness()) {
+            bestRoute = route;
+        }
+        return true;
+    }
+
+    public Route getBestRoute() {
+        return bestRoute;
+    } //get the fittest elite, or null when there are none
+
+    public int size() {
+        return size;
+    } //get number of elites kept
+
+    //get up to count of the fittest elites, fittest first
+    public List<Route> getBestRoutes(int count) {
+        Route[] elites = Arrays.copyOf(heap, size);
+        Arrays.sort(elites, Collections.reverseOrder());
+        ArrayList<Route> best = new ArrayList<Route>(Math.min(count, size));
+        for(int i = 0; i < elites.length && i < count; i++) {
+            best.add(elites[i]);
+        }
+        return best;
+    }
+
+    //hash of a tour that is the same whichever city it starts from and whichever way it is travelled
+    public static long tourHash(int[] tour) {
+        int numOfCities = tour.length;
+        int start       = 0;
+        while(tour[start] != 0 && start < numOfCities - 1) { //find city 0, the tour is read from there
+            start++;
+        }
+        int next     = tour[(start + 1) % numOfCities];
+        int previous = tour[(start + numOfCities - 1) % numOfCities];
+        int step     = next <= previous ? 1 : numOfCities - 1; //read towards the smaller neighbour of city 0
+
+        long hash = 0xcbf29ce484222325L; //FNV-1a over the cities, read in that order
+        for(int i = 0, position = start; i < numOfCities; i++, position = (position + step) % numOfCities) {
+            hash ^= tour[position];
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void siftUp(int i, Route route, long hash) {
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(heap[parent].getFitness() <= route.getFitness()) {
+                break;
+            }
+            heap[i]   = heap[parent];
+            hashes[i] = hashes[parent];
+            i         = parent;
+        }
+        heap[i]   = route;
+        hashes[i] = hash;
+    }
+
+    private void siftDown(int i, Route route, long hash) {
+        while(true) {
+            int child = 2 * i + 1;
+            if(child >= size) {
+                break;
+            }
+            if(child + 1 < size && heap[child + 1].getFitness() < heap[child].getFitness()) {
+                child++;
+            }
+            if(heap[child].getFitness() >= route.getFitness()) {
+                break;
+            }
+            heap[i]   = heap[child];
+            hashes[i] = hashes[child];
+            i         = child;
+        }
+        heap[i]   = route;
+        hashes[i] = hash;
+    }
+}
@@ -1,160 +1,461 @@
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
-public class GA {
+public class GA implements Solver {
 
-    private final ArrayList<Route> eliteRoutes   = new ArrayList<Route>();
-    private final ArrayList<Route> newPopulation = new ArrayList<Route>();
+    //how the children that survive into the next generation are picked
+    public enum Selection {
+        TRUNCATION, //the fittest half of the children survive
+        TOURNAMENT //each survivor is the fittest of a few children drawn at random
+    }
+
+    private EliteArchive eliteRoutes; //best distinct routes of the current run
+    private Route[] population; //routes bred from in the current generation
+    private Route[] newPopulation; //children of the current generation, which become the next population
     private final int numOfCities;
-    private static final int populationSize      = 2000; //Work with a population size of 2000
-    private static final int generations         = 200; //Run algorithm over 200 generations
-    private static final double mutationRate     = 0.015; //Mutation rate to be 1.5%
+    private final Distances distances; //distances between cities, shared by every Route created
+    private final LocalSearch localSearch; //when set, improves the best child of every generation (memetic step)
+    private final int[] childGeneMarks; //marks cities already in the child gene, holding the number of the breed that added them
+    private int breedCount; //number of children bred so far, so marks from earlier children never have to be cleared
+    private SplittableRandom random; //every random choice of a run is drawn from here, so a seed reproduces the run
+    private Selection selection; //how survivors of each generation are picked
+    private double mutationRate; //chance of each route being mutated
+    private MetricsListener metrics; //told about every generation, numbers are only gathered when it isn't NONE
+    private int generation; //generations bred so far in the current run
+    private int island = -1; //island this GA runs as in an IslandGA, reported with its metrics
+    private TourConstructor constructor; //builds the constructed share of the first population, made on the first run that needs it
+    private boolean reseeding; //whether each generation draws a new random stream from runSeed, so a run can be resumed from a checkpoint
+    private long runSeed; //seed every random stream of the current run is drawn from while reseeding
+    private static final int ELITE_CAPACITY      = 32; //keep the 32 best distinct routes as elites
+    private static final int TOURNAMENT_SIZE     = 3; //tournament selection picks the fittest of 3 children
+
+    public GA (Distances distances) {
+        this(distances, null);
+    }
+
+    //improve the best child of each generation with local search when one is given
+    public GA (Distances distances, LocalSearch localSearch) {
+        this.numOfCities    = distances.size();
+        this.distances      = distances;
+        this.localSearch    = localSearch;
+        this.childGeneMarks = new int[numOfCities];
+    }
 
-    public GA (ArrayList<City> cities) {
-        this.numOfCities            = cities.size();
-        ArrayList<Route> population = new ArrayList<Route>();
+    //breed generations until the config's generation limit, time budget or run of generations without improvement is reached,
+    //or the best route is as short as the config's target
+    //with a checkpoint file set, the state is saved there as the run goes, and a resumed run carries on from the generation
+    //saved with the population size it was saved with, as if it had never stopped
+    @Override
+    public Route solve(SolverConfig config, SolverListener listener) {
+        long startTime = System.nanoTime();
+        long deadline  = config.deadline(startTime);
+        if(config.getCheckpointFile() == null) {
+            start(config, config.newRandom(), config.getPopulationSize());
+            return breedGenerations(config, listener, 0, startTime, deadline, null);
+        }
 
-        //spawn first population/generation
-        for(int i = 1; i <= populationSize; i++) {
-            Route route = createNewRoute(cities); //Creates a new route
-            population.add(route); //Add route to population
+        GACheckpoint checkpoint = new GACheckpoint(config.getCheckpointFile(), distances);
+        try {
+            GACheckpoint.State state = config.isResume() ? checkpoint.load() : null;
+            if(state != null) {
+                resume(config, state);
+            } else {
+                long seed = config.newRandom().nextLong();
+                start(config, new SplittableRandom(streamSeed(seed, 0)), config.getPopulationSize());
+                runSeed = seed;
+            }
+            reseeding = true;
+            return breedGenerations(config, listener, state == null ? 0 : state.getLastImprovement(), startTime, deadline, checkpoint);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read GA checkpoint " + checkpoint.getFile(), e);
+        } finally {
+            checkpoint.close();
         }
+    }
 
-        //sort firstGeneration in a descending order by fitness
-        population.sort(Collections.reverseOrder());
+    //spawn the first generation without breeding it, used by IslandGA to run each island a few generations at a time
+    void start(SolverConfig config, SplittableRandom random, int populationSize) {
+        this.random        = random;
+        this.reseeding     = false;
+        this.selection     = config.getSelection();
+        this.mutationRate  = config.getMutationRate();
+        this.metrics       = config.getMetrics();
+        this.generation    = 0;
+        this.eliteRoutes   = new EliteArchive(ELITE_CAPACITY);
+        this.population    = new Route[populationSize];
+        this.newPopulation = new Route[populationSize];
+
+        //spawn first population/generation, starting with the share built by tour constructors
+        int constructed = (int)Math.round(populationSize * config.getConstructedFraction());
+        if(constructed > 0) {
+            constructRoutes(constructed);
+        }
+        for(int i = constructed; i < populationSize; i++) {
+            population[i] = createNewRoute(); //Creates a new route and adds it to population
+        }
 
         //Add best route from first generation to elites
-        addEliteRouteFromGeneration(population);
+        eliteRoutes.offer(population[fittest(population, populationSize)]);
+    }
+
+    //crossover population over specified number of generations, stopping early once the deadline (from System.nanoTime) passes
+    void evolve(int generations, long deadline) {
+        boolean measured = metrics != MetricsListener.NONE;
+        for(int i = 1; i <= generations && System.nanoTime() < deadline; i++) {
+            if(reseeding) {
+                random = new SplittableRandom(streamSeed(runSeed, generation + 1));
+            }
+            long generationStart = measured ? System.nanoTime() : 0;
+            long allocatedBefore = measured ? AllocationCounter.currentThread() : 0;
+            breedPopulation(); //crossover Routes in population
+            selectForNewGen(); //perform selection on children, leaving the next generation in newPopulation
+            int mutations = attemptMutation(); //perform mutation on newPopulation, which should be the new population generated after crossover
+            Route[] swap  = population; //newPopulation becomes the population, and the old population's array is reused for the next children
+            population    = newPopulation;
+            newPopulation = swap;
+            generation++;
+            if(measured) {
+                report(System.nanoTime() - generationStart, AllocationCounter.currentThread() - allocatedBefore, mutations);
+            }
+        }
+    }
+
+    //breed from the current population until solve's limits are reached, saving a checkpoint every so many generations
+    //and once more at the end when one is given
+    private Route breedGenerations(SolverConfig config, SolverListener listener, int lastImprovement, long startTime,
+                                   long deadline, GACheckpoint checkpoint) {
+        listener.onImprovement(getBestRoute(), generation, System.nanoTime() - startTime);
+        while(generation < config.getMaxGenerations() && System.nanoTime() < deadline && !config.reachedTarget(getBestRoute())) {
+            Route best = getBestRoute();
+            evolve(1, deadline);
+            if(getBestRoute() != best) {
+                lastImprovement = generation; //generation in which the best route last got shorter
+                listener.onImprovement(getBestRoute(), generation, System.nanoTime() - startTime);
+            } else if(generation - lastImprovement >= config.getStallGenerations()) {
+                break; //no shorter route for too long, the population has converged
+            }
+            if(checkpoint != null && generation % config.getCheckpointInterval() == 0) {
+                checkpoint.save(snapshot(lastImprovement)); //only the population's array is copied here, the file is written in the background
+            }
+        }
+        if(checkpoint != null) {
+            checkpoint.saveLast(snapshot(lastImprovement));
+        }
+        return getBestRoute();
+    }
 
-        //crossover population over specified number of generations
-        for(int i = 1; i <= generations; i++) {
-            breedPopulation(population); //crossover Routes in population
-            selectForNewGen(); //perform selection on population before breeding again
-            attemptMutation(); //perform mutation on newPopulation ArrayList, which should be the new population generated after crossover
-            Collections.copy(population, newPopulation); //copy newPopulation into population then clear newPopulation
-            newPopulation.clear();
+    //carry on a run from a checkpoint, with the selection, mutation rate and metrics of the config
+    private void resume(SolverConfig config, GACheckpoint.State state) {
+        this.runSeed       = state.getSeed();
+        this.selection     = config.getSelection();
+        this.mutationRate  = config.getMutationRate();
+        this.metrics       = config.getMetrics();
+        this.generation    = state.getGeneration();
+        this.eliteRoutes   = new EliteArchive(ELITE_CAPACITY);
+        this.population    = state.getPopulation();
+        this.newPopulation = new Route[population.length];
+        for(Route elite : state.getElites()) {
+            eliteRoutes.offer(elite);
         }
     }
 
-    //returns first route in eliteRoutes, which should be the very best route across all generations
+    //state of the current run, the routes are shared rather than copied as a route's tour never changes once built
+    private GACheckpoint.State snapshot(int lastImprovement) {
+        return new GACheckpoint.State(generation, lastImprovement, runSeed, population.clone(),
+                eliteRoutes.getBestRoutes(ELITE_CAPACITY));
+    }
+
+    //set the island this GA runs as, so its metrics can be told apart from other islands'
+    void setIsland(int island) {
+        this.island = island;
+    }
+
+    //share one tour constructor between GAs over the same cities, such as the islands of an IslandGA
+    void setConstructor(TourConstructor constructor) {
+        this.constructor = constructor;
+    }
+
+    //returns the fittest elite, which should be the very best route across all generations of the last run
     public Route getBestRoute() {
-        return eliteRoutes.get(0);
+        return eliteRoutes == null ? null : eliteRoutes.getBestRoute();
+    }
+
+    //returns up to count of the best distinct elites
+    List<Route> getElites(int count) {
+        return eliteRoutes.getBestRoutes(count);
+    }
+
+    //put routes from another island into the population in place of the least fit ones, and into the elites
+    void acceptMigrants(List<Route> migrants) {
+        for(Route migrant : migrants) {
+            int worst = 0;
+            for(int i = 1; i < population.length; i++) {
+                if(population[i].getFitness() < population[worst].getFitness()) {
+                    worst = i;
+                }
+            }
+            population[worst] = migrant;
+            eliteRoutes.offer(migrant);
+        }
     }
 
-    //creates a new route out of a list of cities
-    private static Route createNewRoute(ArrayList<City> cities) {
-        Collections.shuffle(cities); //shuffle list of cities and return as a new Route
-        ArrayList<City> newCitiesList = new ArrayList<>(cities);
+    //creates a new route visiting every city in a random order
+    private Route createNewRoute() {
+        int[] tour = new int[numOfCities];
+        for(int i = 0; i < numOfCities; i++) {
+            tour[i] = i;
+        }
+        for(int i = numOfCities - 1; i > 0; i--) { //shuffle the city indexes and return them as a new Route
+            int swapWith   = random.nextInt(i + 1);
+            int city       = tour[i];
+            tour[i]        = tour[swapWith];
+            tour[swapWith] = city;
+        }
+
+        return new Route(tour, distances);
+    }
 
-        return new Route(newCitiesList);
+    //fill the first count routes of the population from the tour constructors, in parallel over the fork-join pool
+    //each randomized route draws from its own stream, split off in order before any are built, so a seed still reproduces the run
+    private void constructRoutes(int count) {
+        if(constructor == null) {
+            constructor = new TourConstructor(distances, new CandidateLists(distances, CandidateLists.DEFAULT_SIZE));
+        }
+        TourConstructor tours      = constructor;
+        SplittableRandom[] streams = new SplittableRandom[count];
+        for(int i = 0; i < count; i++) {
+            streams[i] = random.split();
+        }
+        IntStream.range(0, count).parallel().forEach(i -> population[i] = new Route(
+                i == 0 ? tours.hilbert() : i == 1 ? tours.greedyEdge() : tours.randomNearestNeighbour(streams[i]), distances));
     }
 
-    private void breedPopulation(ArrayList<Route> population) {
+    private void breedPopulation() {
+        int half = population.length / 2;
+
         //breed generation, father with mother and adds child to the new population
-        for(int i = 0; i < population.size(); i+=2) {
-            Route childRoute;
-            childRoute = breed(
-                    population.get(i),
-                    population.get(i + 1)
+        for(int i = 0; i < population.length; i+=2) {
+            newPopulation[i / 2] = breed(
+                    population[i],
+                    population[i + 1]
             );
-            newPopulation.add(childRoute);
         }
 
         //breed mother with father and add child to new population
-        for(int i = 0; i < population.size(); i+=2) {
-            Route childRoute;
-            childRoute = breed(
-                    population.get(i + 1),
-                    population.get(i)
+        for(int i = 0; i < population.length; i+=2) {
+            newPopulation[half + i / 2] = breed(
+                    population[i + 1],
+                    population[i]
             );
-            newPopulation.add(childRoute);
         }
 
-        //Sort new population in descending by fitness, to get best fit route of all the children created
-        newPopulation.sort(Collections.reverseOrder());
+        //find best fit route of all the children created, a single pass is enough as the rest of the order doesn't matter
+        int best = fittest(newPopulation, newPopulation.length);
+
+        if(localSearch != null) {
+            newPopulation[best] = localSearch.improve(newPopulation[best]); //memetic step, polish the best child before it can become an elite
+        }
 
-        addEliteRouteFromGeneration(newPopulation); //add best route from each population to list of elites before breeding again
+        eliteRoutes.offer(newPopulation[best]); //add best route from each population to the elites before breeding again
     }
 
-    private Route breed(Route father, Route mother) {
-        ArrayList<City> childCities = new ArrayList<>(father.getCities());
-        ArrayList<City> childGene   = new ArrayList<>(); //ArrayList to build the gene for the child
+    //ordered crossover in a single pass over each parent, marking the cities taken instead of searching the child for them
+    //package-private, like start and evolve, so the benchmarks can time one crossover once a run has started
+    Route breed(Route father, Route mother) {
+        int[] fatherTour = father.getTour();
+        int[] motherTour = mother.getTour();
+        int[] childTour  = fatherTour.clone();
+        if(breedCount == Integer.MAX_VALUE) { //the next mark would wrap round to marks still left by earlier children
+            Arrays.fill(childGeneMarks, 0);
+            breedCount = 0;
+        }
+        int mark         = ++breedCount; //cities marked with this number are in the gene for this child
 
         int startPosMin = 0; //Min position to generate the start position from
         int max         = numOfCities - 1; //Max position to generate positions from
-        int startPos    = (int)(Math.random() * (max - 1 - startPosMin + 1) + startPosMin); //Random position to start the crossover from
-        int endPos      = (int)(Math.random() * (max - 1 - startPos + 1) + startPos); //Random position to end the crossover at
+        int startPos    = (int)(random.nextDouble() * (max - 1 - startPosMin + 1) + startPosMin); //Random position to start the crossover from
+        int endPos      = (int)(random.nextDouble() * (max - 1 - startPos + 1) + startPos); //Random position to end the crossover at
 
         for(int i = 0; i < numOfCities; i++) {
             //So far we aren't within the crossover positions, add up the father genes
             if(!(i >= startPos && i <= endPos)) {
-                childGene.add(father.getCities().get(i));
+                childGeneMarks[fatherTour[i]] = mark;
             }
         }
 
-        for(int i = 0; i < numOfCities; i++) {
+        int motherPos = 0; //mother genes are taken in order, so the search for the next one carries on from the last
+        for(int i = startPos; i <= endPos; i++) {
             //Once we are within the crossover positions, add up the mother genes
-            if(i >= startPos && i <= endPos) {
-                for(City motherCityInLoop:mother.getCities()) {
-                    if(!childGene.contains(motherCityInLoop)) {
-                        childCities.set(i, motherCityInLoop);
-                        childGene.add(motherCityInLoop);
-                        break;
-                    }
-                }
+            while(childGeneMarks[motherTour[motherPos]] == mark) {
+                motherPos++;
             }
+            childTour[i] = motherTour[motherPos];
+            childGeneMarks[motherTour[motherPos]] = mark;
         }
-        return new Route(childCities);
+        return new Route(childTour, distances);
     }
 
     private void selectForNewGen() {
-        int populationSize = newPopulation.size();
+        int populationSize = newPopulation.length;
+        int survivors      = populationSize / 2;
 
-        //"Kill" or remove half of the population when sorted by fitness
-        newPopulation.subList(populationSize/2, populationSize).clear();
+        //"Kill" or remove half of the children, moving the survivors to the front of newPopulation
+        if(selection == Selection.TOURNAMENT) {
+            //the winners are collected in population, whose routes have all been bred from already
+            for(int i = 0; i < survivors; i++) {
+                Route winner = newPopulation[random.nextInt(populationSize)];
+                for(int round = 1; round < TOURNAMENT_SIZE; round++) {
+                    Route challenger = newPopulation[random.nextInt(populationSize)];
+                    if(challenger.getFitness() > winner.getFitness()) {
+                        winner = challenger;
+                    }
+                }
+                population[i] = winner;
+            }
+            System.arraycopy(population, 0, newPopulation, 0, survivors);
+        } else {
+            selectFittest(newPopulation, survivors); //fittest half moves to the front, without sorting either half
+        }
 
-        //Add elite route into the population to be bred with other genes
-        for(int i = 0; i < populationSize; i+=2) {
-            newPopulation.add(i, eliteRoutes.get(0));
+        //Add elite route into the population to be bred with other genes, filling from the back so no survivor is overwritten before it moves
+        Route elite = eliteRoutes.getBestRoute();
+        for(int i = survivors - 1; i >= 0; i--) {
+            newPopulation[2 * i + 1] = newPopulation[i];
+            newPopulation[2 * i]     = elite;
         }
     }
 
-    //Attempt to mutate genes by a random rule
-    private void attemptMutation() {
-        ArrayList<Route> mutatedPopulation = new ArrayList<>();
-        for(Route route : newPopulation) {
-            if(Math.random() < mutationRate) {
-                mutatedPopulation.add(mutate(route)); //if random rule is met, mutate the selected gene and add to mutated population list
-            } else {
-                mutatedPopulation.add(route); //if random rule isn't met, add selected gene as it is into the list for mutated population
+    //Attempt to mutate genes by a random rule, returning the number of genes mutated
+    private int attemptMutation() {
+        int mutations = 0;
+        for(int i = 0; i < newPopulation.length; i++) {
+            if(random.nextDouble() < mutationRate) {
+                newPopulation[i] = mutate(newPopulation[i]); //if random rule is met, mutate the selected gene in place of the original
+                mutations++;
+            }
+        }
+        return mutations;
+    }
+
+    //tell the metrics listener about the generation just bred, whose routes are now in population
+    //every child is evaluated in full when it is bred, and every mutant from the edges that changed
+    private void report(long wallNanos, long allocatedBytes, int mutations) {
+        int populationSize = population.length;
+        double[] fitness   = new double[populationSize];
+        double sum         = 0;
+        for(int i = 0; i < populationSize; i++) {
+            fitness[i] = population[i].getFitness();
+            sum       += fitness[i];
+        }
+        Arrays.sort(fitness);
+        int unique = 0; //routes whose fitness no other route shares, elites fill half the population so repeats are common
+        for(int i = 0; i < populationSize; i++) {
+            if((i == 0 || fitness[i] != fitness[i - 1]) && (i == populationSize - 1 || fitness[i] != fitness[i + 1])) {
+                unique++;
             }
         }
-        Collections.copy(newPopulation, mutatedPopulation); //copy mutated population, which includes some mutated genes, into newPopulation list
+        metrics.onGeneration(new GenerationStats("GA", island, generation, wallNanos, populationSize + mutations,
+                populationSize, mutations, fitness[populationSize - 1], sum / populationSize, fitness[0],
+                (double)unique / populationSize, allocatedBytes));
     }
 
     //Takes each gene, and does a swap on the genes
-    private Route mutate(Route routeToMutate) {
-        ArrayList<City> mutatedRoute = new ArrayList<>(routeToMutate.getCities()); //put list of cities in selected route into a list for mutation
+    //the mutant's distance is updated rather than summed again, so it is only used for selection: mutants are only ever
+    //bred from, and every route offered to the elites is a child, a migrant or a spawned route, whose distance is summed in full
+    Route mutate(Route routeToMutate) {
+        int[] mutatedTour = routeToMutate.getTour().clone(); //copy cities in selected route into an array for mutation
 
         int swapPosMin = 0; //min position to select for swap
         int max        = numOfCities - 1; //Max position to select for a swap
-        int swapTo     = (int)(Math.random() * (max - 1 - swapPosMin + 1) + swapPosMin); //generate random swap index to swap to
+        int swapTo     = (int)(random.nextDouble() * (max - 1 - swapPosMin + 1) + swapPosMin); //generate random swap index to swap to
         int swapWith   = 0;
 
         //Start up a loop, to ensure that same position can't be selected as swap indexes for a swap
         for(int i = 1; i <= numOfCities; i++) {
             swapWith = 0;
-            swapWith += (int)(Math.random() * (max - 1 - swapPosMin + 1) + swapPosMin); //generate random swap index to swap with
+            swapWith += (int)(random.nextDouble() * (max - 1 - swapPosMin + 1) + swapPosMin); //generate random swap index to swap with
             if(swapWith != swapTo)
                 break; //break loop once the swap indexes aren't the same
         }
 
-        Collections.swap(mutatedRoute, swapTo, swapWith); //perform the swap in essence, mutating the "gene"
-        return new Route(mutatedRoute); //return mutated "gene" as a new Route
+        //only the edges either side of the two swapped cities change, so the distance is updated from those alone
+        double before         = swapEdges(mutatedTour, swapTo, swapWith);
+        int city              = mutatedTour[swapTo]; //perform the swap in essence, mutating the "gene"
+        mutatedTour[swapTo]   = mutatedTour[swapWith];
+        mutatedTour[swapWith] = city;
+        double after          = swapEdges(mutatedTour, swapTo, swapWith);
+        return new Route(mutatedTour, distances, routeToMutate.getDistance() - before + after); //return mutated "gene" as a new Route
+    }
+
+    //sum of the edges leaving and entering positions i and j, each edge counted once when the positions are next to each other
+    private double swapEdges(int[] tour, int i, int j) {
+        int iBefore = (i + numOfCities - 1) % numOfCities;
+        int jBefore = (j + numOfCities - 1) % numOfCities;
+        double sum  = edge(tour, iBefore) + edge(tour, i);
+        if(jBefore != i && jBefore != iBefore) { //edge into j isn't one of the edges already counted
+            sum += edge(tour, jBefore);
+        }
+        if(j != iBefore && j != i) { //nor is the edge out of j
+            sum += edge(tour, j);
+        }
+        return sum;
+    }
+
+    //seed of the random stream for a generation of a run, mixed so the streams of one run don't overlap
+    private static long streamSeed(long seed, int generation) {
+        long z = seed + generation * 0x9E3779B97F4A7C15L;
+        z      = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z      = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private double edge(int[] tour, int position) {
+        return distances.between(tour[position], tour[(position + 1) % numOfCities]);
+    } //distance from the city at a position to the next city
+
+    //returns the position of the fittest of the first size routes
+    private static int fittest(Route[] routes, int size) {
+        int best = 0;
+        for(int i = 1; i < size; i++) {
+            if(routes[i].getFitness() > routes[best].getFitness()) {
+                best = i;
+            }
+        }
+        return best;
     }
 
-    private void addEliteRouteFromGeneration(ArrayList<Route> population) {
-        eliteRoutes.add(population.get(0)); //add best Route from population into the list of eliteRoutes
-        eliteRoutes.sort(Collections.reverseOrder()); //sort elite routes to make sure best elites always come first
+    //partially sort routes so the count fittest are in the first count positions, in no particular order
+    private static void selectFittest(Route[] routes, int count) {
+        int left  = 0;
+        int right = routes.length - 1;
+        while(right > left) {
+            double pivot = routes[(left + right) >>> 1].getFitness();
+            int i = left;
+            int j = right;
+            while(i <= j) {
+                while(routes[i].getFitness() > pivot) {
+                    i++;
+                }
+                while(routes[j].getFitness() < pivot) {
+                    j--;
+                }
+                if(i <= j) {
+                    Route route = routes[i];
+                    routes[i++] = routes[j];
+                    routes[j--] = route;
+                }
+            }
+            if(count - 1 <= j) {
+                right = j;
+            } else if(count - 1 >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//This class saves the state of a GA run to a binary file every few generations, so a run stopped part way can be resumed
+//A checkpoint is taken by copying the population's array of routes, whose tours never change once built, so the breeding
+//thread only pauses for that copy, the file itself is written by a thread of its own. A checkpoint taken while the last
+//one is still being written is skipped rather than queued, so a slow disk never holds the run back
+//The GA draws a new random stream from the run's seed and the generation number at the start of every generation while
+//checkpointing, so a resumed run breeds exactly the generations the stopped one would have
+//  header:      magic, version, content hash, instance hash, number of cities, generation, generation of the last
+//               improvement, seed, population size, number of elites
+//  tours:       every route of the population, then every elite, as city indexes
+//The content hash covers everything after the header, and the instance hash covers every city's name and coordinates, so a
+//damaged file, or one saved for another instance, is never resumed from
+public final class GACheckpoint {
+
+    private static final int MAGIC        = 0x54534741; //"TSGA"
+    private static final int VERSION      = 1;
+    private static final int HEADER_BYTES = 56;
+
+    private final Path file;
+    private final Distances distances;
+    private final long instanceHash;
+    private final ExecutorService writer; //writes checkpoints off the breeding thread, one at a time
+    private Future<?> pending; //the checkpoint being written, if any
+
+    public GACheckpoint(Path file, Distances distances) {
+        this.file         = file;
+        this.distances    = distances;
+        this.instanceHash = instanceHash(distances);
+        this.writer       = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GA checkpoint writer");
+            thread.setDaemon(true); //a checkpoint being written never keeps the JVM running
+            return thread;
+        });
+    }
+
+    //write the state to the file in the background, unless the last checkpoint is still being written,
+    //returns whether the checkpoint was taken
+    public boolean save(State state) {
+        if(pending != null && !pending.isDone()) {
+            return false;
+        }
+        pending = writer.submit(() -> {
+            try {
+                write(state);
+            } catch (IOException e) { //the run goes on without this checkpoint, the last one written is still there
+                System.err.println("Could not write GA checkpoint " + file + ": " + e.getMessage());
+            }
+        });
+        return true;
+    }
+
+    //write the last state of a run, once the checkpoint being written, if any, is done, so it is never skipped
+    public void saveLast(State state) {
+        try {
+            if(pending != null) {
+                pending.get();
+            }
+            write(state);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException e) {
+            System.err.println("Could not write GA checkpoint " + file + ": " + e.getMessage());
+        }
+    }
+
+    //wait for the checkpoint being written, if any, then stop the writer thread
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //read the last checkpoint, returning null if there is none, or it was saved for another instance, or it is damaged
+    public State load() throws IOException {
+        if(!Files.isRegularFile(file)) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        int numOfCities = distances.size();
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(16) != instanceHash
+                || buffer.getInt(24) != numOfCities) {
+            return null;
+        }
+        int generation      = buffer.getInt(28);
+        int lastImprovement = buffer.getInt(32);
+        long seed           = buffer.getLong(36);
+        int populationSize  = buffer.getInt(44);
+        int elites          = buffer.getInt(48);
+        if(populationSize < 0 || elites < 0
+                || HEADER_BYTES + 4L * numOfCities * (populationSize + elites) != buffer.capacity()
+                || InstanceCache.contentHash(buffer, HEADER_BYTES, buffer.capacity()) != buffer.getLong(8)) {
+            return null;
+        }
+
+        buffer.position(HEADER_BYTES);
+        Route[] population = new Route[populationSize];
+        for(int i = 0; i < populationSize; i++) {
+            population[i] = readRoute(buffer, numOfCities);
+            if(population[i] == null) {
+                return null;
+            }
+        }
+        List<Route> eliteRoutes = new ArrayList<Route>(elites);
+        for(int i = 0; i < elites; i++) {
+            Route elite = readRoute(buffer, numOfCities);
+            if(elite == null) {
+                return null;
+            }
+            eliteRoutes.add(elite);
+        }
+        return new State(generation, lastImprovement, seed, population, eliteRoutes);
+    }
+
+    public Path getFile() {
+        return file;
+    } //get the file checkpoints are written to
+
+    //write the state to a temporary file, then move it over the checkpoint, so the last checkpoint stays whole if this fails
+    private void write(State state) throws IOException {
+        int numOfCities = distances.size();
+        int routes      = state.population.length + state.elites.size();
+        long totalBytes = HEADER_BYTES + 4L * numOfCities * routes;
+        if(totalBytes > Integer.MAX_VALUE) {
+            throw new IOException("Population is too large to checkpoint");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int)totalBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(0); //hash is filled in once the tours are written
+        buffer.putLong(instanceHash).putInt(numOfCities).putInt(state.generation).putInt(state.lastImprovement);
+        buffer.putLong(state.seed).putInt(state.population.length).putInt(state.elites.size());
+        buffer.position(HEADER_BYTES);
+        for(Route route : state.population) {
+            buffer.asIntBuffer().put(route.getTour());
+            buffer.position(buffer.position() + 4 * numOfCities);
+        }
+        for(Route route : state.elites) {
+            buffer.asIntBuffer().put(route.getTour());
+            buffer.position(buffer.position() + 4 * numOfCities);
+        }
+        buffer.putLong(8, InstanceCache.contentHash(buffer, HEADER_BYTES, buffer.capacity()));
+        buffer.flip();
+
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false); //on disk before it replaces the last checkpoint
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary); //only still there if writing or moving it failed
+        }
+    }
+
+    //read a tour, returning null unless it visits every city once, as a hash match alone doesn't prove the indexes are in range
+    private Route readRoute(ByteBuffer buffer, int numOfCities) {
+        int[] tour        = new int[numOfCities];
+        boolean[] visited = new boolean[numOfCities];
+        buffer.asIntBuffer().get(tour);
+        buffer.position(buffer.position() + 4 * numOfCities);
+        for(int city : tour) {
+            if(city < 0 || city >= numOfCities || visited[city]) {
+                return null;
+            }
+            visited[city] = true;
+        }
+        return new Route(tour, distances);
+    }
+
+    //hash of every city's name and coordinates, in index order
+    private static long instanceHash(Distances distances) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < distances.size(); i++) {
+            City city = distances.getCity(i);
+            for(long value : new long[] {Double.doubleToLongBits(city.getxCoordinate()),
+                    Double.doubleToLongBits(city.getyCoordinate()), city.getName().hashCode()}) {
+                hash ^= value;
+                hash *= 0x100000001b3L;
+                hash ^= hash >>> 29;
+            }
+        }
+        return hash;
+    }
+
+    //This class holds what a GA needs to carry on a run: its population and elites, the generations bred so far,
+    //the generation its best route last got shorter in, and the seed its random streams are drawn from
+    public static final class State {
+        private final int generation;
+        private final int lastImprovement;
+        private final long seed;
+        private final Route[] population;
+        private final List<Route> elites;
+
+        State(int generation, int lastImprovement, long seed, Route[] population, List<Route> elites) {
+            this.generation      = generation;
+            this.lastImprovement = lastImprovement;
+            this.seed            = seed;
+            this.population      = population;
+            this.elites          = elites;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        public int getLastImprovement() {
+            return lastImprovement;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        Route[] getPopulation() {
+            return population;
+        }
+
+        List<Route> getElites() {
+            return elites;
+        }
+    }
+}
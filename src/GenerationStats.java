@@ -0,0 +1,86 @@
+//This class holds what happened in one generation of a search, as passed to a MetricsListener
+//NearestNeighbour reports its whole run as a single generation, in which every starting city tried is one evaluation
+public final class GenerationStats {
+
+    private final String solver; //name of the solver's class
+    private final int island; //island the generation ran on, or -1 when the solver isn't an IslandGA island
+    private final int generation; //number of the generation, counting from 1
+    private final long wallNanos; //time the generation took
+    private final long evaluations; //routes whose distance was worked out, in full or from the edges that changed
+    private final long crossovers; //children bred
+    private final long mutations; //routes mutated
+    private final double bestFitness; //fitness of the fittest route in the population after the generation
+    private final double meanFitness;
+    private final double worstFitness;
+    private final double diversity; //share of the population with a distance no other route has, NaN when not measured
+    private final long allocatedBytes; //bytes allocated during the generation, 0 when the JVM can't tell
+
+    public GenerationStats(String solver, int island, int generation, long wallNanos, long evaluations, long crossovers,
+                           long mutations, double bestFitness, double meanFitness, double worstFitness, double diversity,
+                           long allocatedBytes) {
+        this.solver         = solver;
+        this.island         = island;
+        this.generation     = generation;
+        this.wallNanos      = wallNanos;
+        this.evaluations    = evaluations;
+        this.crossovers     = crossovers;
+        this.mutations      = mutations;
+        this.bestFitness    = bestFitness;
+        this.meanFitness    = meanFitness;
+        this.worstFitness   = worstFitness;
+        this.diversity      = diversity;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getSolver() {
+        return solver;
+    }
+
+    public int getIsland() {
+        return island;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public double getEvaluationsPerSecond() {
+        return wallNanos == 0 ? 0 : evaluations * 1e9 / wallNanos;
+    } //get routes evaluated per second of the generation's wall time
+
+    public long getCrossovers() {
+        return crossovers;
+    }
+
+    public long getMutations() {
+        return mutations;
+    }
+
+    public double getBestFitness() {
+        return bestFitness;
+    }
+
+    public double getMeanFitness() {
+        return meanFitness;
+    }
+
+    public double getWorstFitness() {
+        return worstFitness;
+    }
+
+    public double getDiversity() {
+        return diversity;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//This class keeps a route up to date while its instance changes a few cities at a time, without solving it again:
+//removed cities are spliced out of the tour, each new city is put in wherever it adds the least length next to one of
+//its candidates, and 2-opt / Or-opt local search is started only from the new cities and the cities around each change,
+//so the rest of the tour is left as it is unless a move reaches it
+//The changed instance's distances are computed on demand and its candidate lists carried over from the last one, so an
+//update takes time in proportion to the number of cities, rather than to the number of pairs of cities
+//Instances given as explicit weights have no coordinates to work out the distances of new cities from, so can't be changed
+public final class IncrementalSolver {
+
+    private Route route; //the route over the current instance
+    private CandidateLists candidates; //candidate lists of the current instance
+
+    //keep the given route up to date, working out candidate lists for its instance first
+    public IncrementalSolver(Route route) {
+        this(route, new CandidateLists(route.getDistances(), CandidateLists.DEFAULT_SIZE));
+    }
+
+    //keep the given route up to date, starting from candidate lists already worked out for its instance
+    public IncrementalSolver(Route route, CandidateLists candidates) {
+        if(route.getDistances().isExplicit()) {
+            throw new IllegalArgumentException("Instances given as explicit weights can't be changed");
+        }
+        this.route      = route;
+        this.candidates = candidates;
+    }
+
+    //remove the given cities from the instance and add the new ones, then repair the route and improve it around the changes,
+    //removed cities must be cities of the current route, as returned by getRoute().getCities(), new cities' indexes are ignored,
+    //the changed instance lists the cities left in their old order followed by the new ones, and every city is numbered again
+    public Route update(List<City> inserted, List<City> removed) {
+        Distances previous  = route.getDistances();
+        int previousCount   = previous.size();
+        boolean[] isRemoved = new boolean[previousCount];
+        for(City city : removed) {
+            int index = city.getIndex();
+            if(index < 0 || index >= previousCount || !sameCity(previous.getCity(index), city)) {
+                throw new IllegalArgumentException("City " + city.getName() + " is not a city of the current route");
+            }
+            isRemoved[index] = true;
+        }
+
+        //cities left keep their order, new cities come after them
+        ArrayList<City> cities = new ArrayList<City>(previousCount + inserted.size());
+        int[] newIndexes       = new int[previousCount]; //index of each previous city in the changed instance, -1 if removed
+        for(int i = 0; i < previousCount; i++) {
+            newIndexes[i] = isRemoved[i] ? -1 : cities.size();
+            if(!isRemoved[i]) {
+                City city = previous.getCity(i);
+                cities.add(city.getIndex() == cities.size() ? city : renumber(city, cities.size()));
+            }
+        }
+        int survivors = cities.size();
+        for(City city : inserted) {
+            cities.add(renumber(city, cities.size()));
+        }
+        int numOfCities = cities.size();
+        if(numOfCities <= 2) {
+            throw new IllegalArgumentException("Not enough cities left, " + numOfCities + " after the update");
+        }
+        int[] previousIndexes = new int[numOfCities];
+        Arrays.fill(previousIndexes, -1);
+        for(int i = 0; i < previousCount; i++) {
+            if(newIndexes[i] >= 0) {
+                previousIndexes[newIndexes[i]] = i;
+            }
+        }
+        Distances distances = new Distances(cities, true, previous.isRounded());
+        candidates          = new CandidateLists(candidates, previousIndexes, distances);
+
+        //splice removed cities out by linking the cities either side of them, which local search then starts from
+        int[] next       = new int[numOfCities];
+        int[] previousOf = new int[numOfCities];
+        boolean[] inTour = new boolean[numOfCities];
+        boolean[] active = new boolean[numOfCities]; //cities local search starts from
+        int[] tour       = route.getTour();
+        int start        = 0; //position of a city that is kept, so the walk starts and ends on one
+        while(start < previousCount && isRemoved[tour[start]]) {
+            start++;
+        }
+        int last        = -1;
+        boolean skipped = false; //whether removed cities were passed since the last city kept
+        for(int i = 0; i < previousCount; i++) {
+            int city = tour[(start + i) % previousCount];
+            if(isRemoved[city]) {
+                skipped = true;
+                continue;
+            }
+            int kept = newIndexes[city];
+            if(last >= 0) {
+                link(next, previousOf, last, kept);
+                if(skipped) {
+                    active[last] = true;
+                    active[kept] = true;
+                }
+            }
+            inTour[kept] = true;
+            last         = kept;
+            skipped      = false;
+        }
+        if(last >= 0) {
+            int first = newIndexes[tour[start]];
+            link(next, previousOf, last, first); //close the cycle, a single city is linked to itself
+            if(skipped) {
+                active[last]  = true;
+                active[first] = true;
+            }
+        }
+
+        //put each new city in where it adds the least length, next to a candidate already in the tour
+        for(int city = survivors; city < numOfCities; city++) {
+            if(survivors == 0 && city == 0) { //every city was removed, the first new city starts the tour
+                link(next, previousOf, city, city);
+            } else {
+                int after = cheapestInsertion(distances, city, next, previousOf, inTour);
+                link(next, previousOf, city, next[after]);
+                link(next, previousOf, after, city);
+                active[after]      = true;
+                active[next[city]] = true;
+            }
+            inTour[city] = true;
+            active[city] = true;
+        }
+
+        int[] repaired = new int[numOfCities];
+        int count      = 0;
+        for(int i = 0, city = next[numOfCities - 1]; i < numOfCities; i++, city = next[city]) {
+            repaired[i] = city;
+            if(active[city]) {
+                count++;
+            }
+        }
+        int[] activeCities = new int[count];
+        for(int city = 0, i = 0; city < numOfCities; city++) {
+            if(active[city]) {
+                activeCities[i++] = city;
+            }
+        }
+        route = new LocalSearch(distances, candidates).improve(new Route(repaired, distances), activeCities);
+        return route;
+    }
+
+    //get the route over the current instance
+    public Route getRoute() {
+        return route;
+    }
+
+    //get the candidate lists of the current instance
+    public CandidateLists getCandidates() {
+        return candidates;
+    }
+
+    //city of the tour after which a new city adds the least length, looking next to its candidates in the tour,
+    //or through the whole tour when none of them is in it yet
+    private int cheapestInsertion(Distances distances, int city, int[] next, int[] previousOf, boolean[] inTour) {
+        int best        = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for(int i = 0; i < candidates.size(); i++) {
+            int candidate = candidates.get(city, i);
+            if(inTour[candidate]) {
+                for(int after : new int[] {candidate, previousOf[candidate]}) { //either edge at the candidate
+                    double cost = insertionCost(distances, city, after, next[after]);
+                    if(cost < bestCost) {
+                        best     = after;
+                        bestCost = cost;
+                    }
+                }
+            }
+        }
+        if(best < 0) {
+            for(int after = 0; after < distances.size(); after++) {
+                if(inTour[after] && insertionCost(distances, city, after, next[after]) < bestCost) {
+                    best     = after;
+                    bestCost = insertionCost(distances, city, after, next[after]);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static double insertionCost(Distances distances, int city, int after, int before) {
+        return distances.between(after, city) + distances.between(city, before) - distances.between(after, before);
+    } //get the length added by putting a city between two cities next to each other in the tour
+
+    private static void link(int[] next, int[] previousOf, int from, int to) {
+        next[from]     = to;
+        previousOf[to] = from;
+    } //make a city follow another in the tour
+
+    private static City renumber(City city, int index) {
+        return new City(index, city.getName(), city.getxCoordinate(), city.getyCoordinate());
+    } //get a copy of a city with a new index
+
+    private static boolean sameCity(City a, City b) {
+        return a == b || (a.getName().equals(b.getName()) && Double.compare(a.getxCoordinate(), b.getxCoordinate()) == 0
+                && Double.compare(a.getyCoordinate(), b.getyCoordinate()) == 0);
+    } //check whether two cities are the same, by name and coordinates when they aren't the same object
+}
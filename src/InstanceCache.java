@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+//This class keeps a binary copy of each loaded instance next to its file, so the same instance can be opened again
+//without parsing the text, dropping duplicates or finding every city's nearest cities
+//The cache file is memory-mapped when read, its coordinates are packed doubles and its candidate lists packed ints:
+//  header:      magic, version, content hash, number of cities, duplicates dropped, candidates per city, name lengths,
+//               whether distances are rounded to whole numbers
+//  coordinates: x and y of every city, in index order
+//  candidates:  every city's candidate list, one city after another
+//  names:       the instance name, then each city's name as its length and UTF-8 bytes
+//The content hash covers everything after the header, so a cut short or damaged cache file is parsed again instead of used
+//Instances given as explicit weights are not cached, their weights are as large to store as they are to parse
+public final class InstanceCache {
+
+    public static final String EXTENSION = ".cache"; //cache files are named after their source file, with this added
+
+    private static final int MAGIC        = 0x54535043; //"TSPC"
+    private static final int VERSION      = 2;
+    private static final int HEADER_BYTES = 40; //header is padded so the coordinates after it are 8 byte aligned
+
+    private final CityLoader loader; //reads the source file when there is no usable cache
+    private final int candidateSize; //number of nearest cities kept for every city
+
+    public InstanceCache(CityLoader loader, int candidateSize) {
+        this.loader        = loader;
+        this.candidateSize = candidateSize;
+    }
+
+    //load an instance from its cache file if it is newer than the file itself and was built with the same number of
+    //candidates, otherwise parse the file, work out its candidate lists and write a new cache file for next time
+    public TspInstance load(String filePath) throws IOException {
+        return complete(filePath, loadCities(filePath));
+    }
+
+    //load an instance's cities without working out anything that isn't already cached: from its cache file when that is
+    //up to date, otherwise parsed from the file, in which case the instance has no candidate lists and no cache file is written
+    //its distances are only built when asked for, unless they are explicit weights, which are always read
+    public TspInstance loadCities(String filePath) throws IOException {
+        Path source    = Paths.get(filePath);
+        Path cacheFile = cachePath(source);
+        if(Files.isRegularFile(cacheFile)
+                && Files.getLastModifiedTime(cacheFile).compareTo(Files.getLastModifiedTime(source)) >= 0) {
+            TspInstance cached = read(cacheFile);
+            if(cached != null) {
+                return cached;
+            }
+        }
+        return loader.load(filePath);
+    }
+
+    //work out the candidate lists of an instance returned by loadCities and write its cache file for next time,
+    //an instance read from its cache file already has them and is returned as it is
+    public TspInstance complete(String filePath, TspInstance parsed) {
+        if(parsed.getCandidates() != null) {
+            return parsed;
+        }
+        Path cacheFile            = cachePath(Paths.get(filePath));
+        Distances distances       = parsed.getDistances();
+        CandidateLists candidates = new CandidateLists(distances, candidateSize);
+        TspInstance instance      = new TspInstance(parsed.getName(), parsed.getCities(), distances, parsed.getDuplicates(), candidates);
+        if(!distances.isExplicit()) {
+            try {
+                write(cacheFile, instance);
+            } catch (IOException e) { //the instance is still usable without its cache, such as when its folder is read-only
+                System.err.println("Could not write instance cache " + cacheFile + ": " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    public static Path cachePath(Path source) {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    } //get the cache file kept for a source file
+
+    //read a cache file, returning null if it isn't a cache file of this version, holds a different number of candidates,
+    //or its content doesn't match its hash
+    TspInstance read(Path cacheFile) throws IOException {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            if(channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); //the mapping stays valid once the channel is closed
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return null;
+        }
+        long hash        = buffer.getLong(8);
+        int numOfCities  = buffer.getInt(16);
+        int duplicates   = buffer.getInt(20);
+        int size         = buffer.getInt(24);
+        long namesBytes  = buffer.getInt(28) & 0xFFFFFFFFL;
+        boolean rounded  = buffer.getInt(32) != 0;
+        long coordinates = HEADER_BYTES;
+        long lists       = coordinates + 16L * numOfCities;
+        long names       = lists + 4L * numOfCities * size;
+        if(size != Math.min(candidateSize, Math.max(0, numOfCities - 1)) || names + namesBytes != buffer.capacity()
+                || contentHash(buffer, HEADER_BYTES, buffer.capacity()) != hash) {
+            return null;
+        }
+
+        double[] xy = new double[2 * numOfCities];
+        buffer.position((int)coordinates);
+        buffer.asDoubleBuffer().get(xy);
+        int[] candidates = new int[numOfCities * size];
+        buffer.position((int)lists);
+        buffer.asIntBuffer().get(candidates);
+
+        buffer.position((int)names);
+        String name            = readString(buffer);
+        ArrayList<City> cities = new ArrayList<City>(numOfCities);
+        for(int i = 0; i < numOfCities; i++) {
+            cities.add(new City(i, readString(buffer), xy[2 * i], xy[2 * i + 1]));
+        }
+        return new TspInstance(name, cities, null, rounded, duplicates, new CandidateLists(size, candidates)); //distances are built when first asked for
+    }
+
+    //write an instance to a temporary file, then move it over the cache file, so a reader never sees a half written cache
+    void write(Path cacheFile, TspInstance instance) throws IOException {
+        ArrayList<City> cities    = instance.getCities();
+        CandidateLists candidates = instance.getCandidates();
+        int numOfCities           = cities.size();
+        byte[] name               = instance.getName().getBytes(StandardCharsets.UTF_8);
+        byte[][] cityNames        = new byte[numOfCities][];
+        long namesBytes           = 4 + name.length;
+        for(int i = 0; i < numOfCities; i++) {
+            cityNames[i] = cities.get(i).getName().getBytes(StandardCharsets.UTF_8);
+            namesBytes  += 4 + cityNames[i].length;
+        }
+        long totalBytes = HEADER_BYTES + 16L * numOfCities + 4L * numOfCities * candidates.size() + namesBytes;
+        if(totalBytes > Integer.MAX_VALUE) {
+            throw new IOException("Instance is too large to cache");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int)totalBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(0); //hash is filled in once the content is written
+        buffer.putInt(numOfCities).putInt(instance.getDuplicates()).putInt(candidates.size()).putInt((int)namesBytes);
+        buffer.putInt(instance.isRounded() ? 1 : 0);
+        buffer.position(HEADER_BYTES);
+        for(City city : cities) {
+            buffer.putDouble(city.getxCoordinate()).putDouble(city.getyCoordinate());
+        }
+        for(int candidate : candidates.toArray()) {
+            buffer.putInt(candidate);
+        }
+        buffer.putInt(name.length).put(name);
+        for(byte[] cityName : cityNames) {
+            buffer.putInt(cityName.length).put(cityName);
+        }
+        buffer.putLong(8, contentHash(buffer, HEADER_BYTES, buffer.capacity()));
+        buffer.flip();
+
+        //every writer gets its own temporary file, so two threads caching the same instance can't write into each other's
+        Path temporary = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary); //only still there if writing or moving it failed
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //FNV-1a style hash over the bytes from one position to another, taken 8 bytes at a time, also used by GACheckpoint
+    static long contentHash(ByteBuffer buffer, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        int i     = from;
+        for(; i + 8 <= to; i += 8) {
+            hash ^= buffer.getLong(i);
+            hash *= 0x100000001b3L;
+            hash ^= hash >>> 29; //mixes high bits back down, a plain multiply never moves them into the low bits
+        }
+        for(; i < to; i++) {
+            hash ^= buffer.get(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+//This class runs the genetic algorithm as several islands, each breeding its own smaller population on its own thread
+//Every few generations the islands stop together and each one sends its best routes to the next island in a ring
+//Each island draws from its own random stream split off a master seed, so the same seed and number of islands always give
+//the same route as long as the run isn't cut short by its time budget. The config sets the number of islands, by default
+//one per thread of the fork-join pool, so a run on another machine needs the same number set to be repeated
+public final class IslandGA implements Solver {
+
+    public static final int DEFAULT_MIGRATION_INTERVAL = 10; //islands exchange routes every 10 generations
+    public static final int DEFAULT_MIGRANTS           = 2; //each island sends its 2 best routes
+
+    private final List<GA> islands = new ArrayList<GA>();
+    private final int migrationInterval;
+    private final int migrants;
+    private final Distances distances;
+    private final CandidateLists candidates; //each island gets its own local search over these when they are given
+    private TourConstructor constructor; //shared by the islands to seed their first populations, made on the first run that needs it
+    private Route bestRoute; //holds the best route across all islands
+
+    public IslandGA(Distances distances) {
+        this(distances, null, DEFAULT_MIGRATION_INTERVAL, DEFAULT_MIGRANTS);
+    }
+
+    //give each island its own local search over the candidate lists when they are given
+    public IslandGA(Distances distances, CandidateLists candidates, int migrationInterval, int migrants) {
+        this.migrationInterval = migrationInterval;
+        this.migrants          = migrants;
+        this.distances         = distances;
+        this.candidates        = candidates;
+    }
+
+    //split the config's population between the config's number of islands, and breed them until one of the config's
+    //limits is reached, the generation and stall limits and the target distance are checked each time the islands meet to migrate
+    @Override
+    public Route solve(SolverConfig config, SolverListener listener) {
+        long startTime = System.nanoTime();
+        long deadline  = config.deadline(startTime);
+        if(islands.size() != config.getIslands()) {
+            islands.clear();
+            for(int i = 0; i < config.getIslands(); i++) {
+                LocalSearch localSearch = candidates == null ? null : new LocalSearch(distances, candidates);
+                GA island               = new GA(distances, localSearch);
+                island.setIsland(i);
+                island.setConstructor(constructor);
+                islands.add(island);
+            }
+        }
+        int islandSize              = Math.max(2, (config.getPopulationSize() / islands.size()) & ~1); //each island breeds in pairs, so its size is kept even
+        SplittableRandom masterSeed = config.newRandom();
+
+        bestRoute = null;
+        if(config.getConstructedFraction() > 0 && constructor == null) {
+            //every island seeds from the same constructor, so its candidate lists and k-d tree are only built once
+            constructor = new TourConstructor(distances, new CandidateLists(distances, CandidateLists.DEFAULT_SIZE));
+            for(GA island : islands) {
+                island.setConstructor(constructor);
+            }
+        }
+        for(GA island : islands) {
+            //streams are split in island order before any island runs, so each island always gets the same one
+            island.start(config, masterSeed.split(), islandSize);
+        }
+        updateBestRoute(listener, 0, startTime);
+
+        int lastImprovement = 0; //generation in which the best route last got shorter
+        for(int generation = 0; generation < config.getMaxGenerations() && System.nanoTime() < deadline
+                && !config.reachedTarget(bestRoute); generation += migrationInterval) {
+            int generations = Math.min(migrationInterval, config.getMaxGenerations() - generation);
+            evolveIslands(generations, deadline);
+            migrate();
+            if(updateBestRoute(listener, generation + generations, startTime)) {
+                lastImprovement = generation + generations;
+            } else if(generation + generations - lastImprovement >= config.getStallGenerations()) {
+                break; //no island found a shorter route for too long
+            }
+        }
+        return bestRoute;
+    }
+
+    //returns the best route found by any island
+    public Route getBestRoute() {
+        return bestRoute;
+    }
+
+    public int getNumOfIslands() {
+        return islands.size();
+    } //get the number of islands of the last run
+
+    //take the shortest of the islands' best routes, telling the listener when it is shorter than the best route so far
+    private boolean updateBestRoute(SolverListener listener, int generation, long startTime) {
+        Route previous = bestRoute;
+        for(GA island : islands) {
+            Route route = island.getBestRoute();
+            if(bestRoute == null || route.getDistance() < bestRoute.getDistance()) {
+                bestRoute = route;
+            }
+        }
+        if(bestRoute != previous) {
+            listener.onImprovement(bestRoute, generation, System.nanoTime() - startTime);
+            return true;
+        }
+        return false;
+    }
+
+    //breed every island for a number of generations in parallel, returning once all of them are done
+    private void evolveIslands(int generations, long deadline) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for(GA island : islands) {
+            tasks.add(ForkJoinTask.adapt(() -> island.evolve(generations, deadline)));
+        }
+        ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    //send each island's best routes to the next island in the ring, taking them all before any island receives, so order doesn't matter
+    private void migrate() {
+        int numOfIslands = islands.size();
+        if(numOfIslands < 2) {
+            return;
+        }
+        List<List<Route>> outgoing = new ArrayList<List<Route>>(numOfIslands);
+        for(GA island : islands) {
+            outgoing.add(island.getElites(migrants));
+        }
+        for(int i = 0; i < numOfIslands; i++) {
+            islands.get((i + 1) % numOfIslands).acceptMigrants(outgoing.get(i));
+        }
+    }
+}
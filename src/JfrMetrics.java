@@ -0,0 +1,105 @@
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//This class records every generation as a "SolvingTSP.Generation" event in Java Flight Recorder, so it shows up next to
+//GC and JIT activity in a recording started with -XX:StartFlightRecording or by jcmd
+//The code is built for Java 8, whose API has no jdk.jfr, so the event type is made at runtime through jdk.jfr.EventFactory
+//by reflection, create returns null on JVMs without it
+public final class JfrMetrics implements MetricsListener {
+
+    private static final String EVENT_NAME = "SolvingTSP.Generation";
+
+    private final Object factory; //jdk.jfr.EventFactory for the generation event
+    private final Method newEvent;
+    private final Method shouldCommit;
+    private final Method set;
+    private final Method commit;
+
+    private JfrMetrics(Object factory, Method newEvent, Method shouldCommit, Method set, Method commit) {
+        this.factory      = factory;
+        this.newEvent     = newEvent;
+        this.shouldCommit = shouldCommit;
+        this.set          = set;
+        this.commit       = commit;
+    }
+
+    //register the generation event type, returning null if this JVM has no Flight Recorder API
+    public static JfrMetrics create() {
+        try {
+            Class<?> eventFactory      = Class.forName("jdk.jfr.EventFactory");
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptor   = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> event             = Class.forName("jdk.jfr.Event");
+            Constructor<?> annotation  = annotationElement.getConstructor(Class.class, Object.class);
+            Constructor<?> field       = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+            List<Object> eventAnnotations = Arrays.asList(
+                    annotation.newInstance(annotationType("jdk.jfr.Name"), EVENT_NAME),
+                    annotation.newInstance(annotationType("jdk.jfr.Label"), "TSP Generation"),
+                    annotation.newInstance(annotationType("jdk.jfr.Category"), new String[] {"SolvingTSP"}),
+                    annotation.newInstance(annotationType("jdk.jfr.Description"), "One generation of a TSP search"));
+            Object nanoseconds = annotation.newInstance(annotationType("jdk.jfr.Timespan"), "NANOSECONDS");
+            Object bytes       = annotation.newInstance(annotationType("jdk.jfr.DataAmount"), "BYTES");
+            //fields in the order onGeneration sets them
+            List<Object> fields = Arrays.asList(
+                    field.newInstance(String.class, "solver", labelled(annotation, "Solver")),
+                    field.newInstance(int.class, "island", labelled(annotation, "Island")),
+                    field.newInstance(int.class, "generation", labelled(annotation, "Generation")),
+                    field.newInstance(long.class, "wallTime", labelled(annotation, "Wall Time", nanoseconds)),
+                    field.newInstance(long.class, "evaluations", labelled(annotation, "Evaluations")),
+                    field.newInstance(double.class, "evaluationsPerSecond", labelled(annotation, "Evaluations per Second")),
+                    field.newInstance(long.class, "crossovers", labelled(annotation, "Crossovers")),
+                    field.newInstance(long.class, "mutations", labelled(annotation, "Mutations")),
+                    field.newInstance(double.class, "bestFitness", labelled(annotation, "Best Fitness")),
+                    field.newInstance(double.class, "meanFitness", labelled(annotation, "Mean Fitness")),
+                    field.newInstance(double.class, "worstFitness", labelled(annotation, "Worst Fitness")),
+                    field.newInstance(double.class, "diversity", labelled(annotation, "Diversity")),
+                    field.newInstance(long.class, "allocated", labelled(annotation, "Allocated", bytes)));
+
+            Object factory = eventFactory.getMethod("create", List.class, List.class).invoke(null, eventAnnotations, fields);
+            return new JfrMetrics(factory, eventFactory.getMethod("newEvent"), event.getMethod("shouldCommit"),
+                    event.getMethod("set", int.class, Object.class), event.getMethod("commit"));
+        } catch (ReflectiveOperationException | RuntimeException e) { //no jdk.jfr, or one without EventFactory
+            return null;
+        }
+    }
+
+    //commit a generation event, skipping it cheaply when no recording has the event enabled
+    @Override
+    public void onGeneration(GenerationStats stats) {
+        try {
+            Object event = newEvent.invoke(factory);
+            if(!(Boolean)shouldCommit.invoke(event)) {
+                return;
+            }
+            Object[] values = {stats.getSolver(), stats.getIsland(), stats.getGeneration(), stats.getWallNanos(),
+                    stats.getEvaluations(), stats.getEvaluationsPerSecond(), stats.getCrossovers(), stats.getMutations(),
+                    stats.getBestFitness(), stats.getMeanFitness(), stats.getWorstFitness(), stats.getDiversity(),
+                    stats.getAllocatedBytes()};
+            for(int i = 0; i < values.length; i++) {
+                set.invoke(event, i, values[i]);
+            }
+            commit.invoke(event);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not record " + EVENT_NAME + " event", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotationType(String name) throws ClassNotFoundException {
+        return (Class<? extends Annotation>)Class.forName(name);
+    }
+
+    //annotations of a field, its label followed by any others given
+    private static List<Object> labelled(Constructor<?> annotation, String label, Object... others) throws ReflectiveOperationException {
+        List<Object> annotations = new ArrayList<Object>();
+        annotations.add(annotation.newInstance(annotationType("jdk.jfr.Label"), label));
+        Collections.addAll(annotations, others);
+        return annotations;
+    }
+}
@@ -0,0 +1,42 @@
+import java.io.PrintStream;
+
+//This class writes every generation as one line of JSON, so a run can be plotted or compared after it ends
+//Numbers that aren't finite, such as a diversity that wasn't measured, are written as null
+public final class JsonLinesMetrics implements MetricsListener {
+
+    private final PrintStream out;
+    private final StringBuilder line = new StringBuilder(); //reused for every line, guarded by the lock on this listener
+
+    public JsonLinesMetrics(PrintStream out) {
+        this.out = out;
+    }
+
+    //write a generation, one island at a time so lines from different islands never mix
+    @Override
+    public synchronized void onGeneration(GenerationStats stats) {
+        line.setLength(0);
+        line.append("{\"solver\":\"").append(stats.getSolver()).append('"');
+        line.append(",\"island\":").append(stats.getIsland());
+        line.append(",\"generation\":").append(stats.getGeneration());
+        line.append(",\"wallNanos\":").append(stats.getWallNanos());
+        line.append(",\"evaluations\":").append(stats.getEvaluations());
+        append("evaluationsPerSecond", stats.getEvaluationsPerSecond());
+        line.append(",\"crossovers\":").append(stats.getCrossovers());
+        line.append(",\"mutations\":").append(stats.getMutations());
+        append("bestFitness", stats.getBestFitness());
+        append("meanFitness", stats.getMeanFitness());
+        append("worstFitness", stats.getWorstFitness());
+        append("diversity", stats.getDiversity());
+        line.append(",\"allocatedBytes\":").append(stats.getAllocatedBytes()).append('}');
+        out.println(line);
+    }
+
+    private void append(String name, double value) {
+        line.append(",\"").append(name).append("\":");
+        if(Double.isNaN(value) || Double.isInfinite(value)) {
+            line.append("null");
+        } else {
+            line.append(value);
+        }
+    }
+}
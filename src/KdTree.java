@@ -0,0 +1,255 @@
+import java.util.Arrays;
+
+//This class is a 2-d tree over the city coordinates, used to find the nearest city that hasn't been visited yet
+public final class KdTree {
+
+    private final int[] cities; //city indexes, arranged so every range is split at its middle position
+    private final int[] positions; //position of each city in the tree, by city index
+    private final double[] xCoordinates; //x coordinate of the city at each position
+    private final double[] yCoordinates; //y coordinate of the city at each position
+    private final int[] subtreeSizes; //number of cities in the range split at each position
+
+    public KdTree(Distances distances) {
+        int numOfCities   = distances.size();
+        this.cities       = new int[numOfCities];
+        this.positions    = new int[numOfCities];
+        this.xCoordinates = new double[numOfCities];
+        this.yCoordinates = new double[numOfCities];
+        this.subtreeSizes = new int[numOfCities];
+        for(int i = 0; i < numOfCities; i++) {
+            cities[i] = i;
+        }
+        build(distances, 0, numOfCities, 0);
+        for(int position = 0; position < numOfCities; position++) {
+            positions[cities[position]] = position;
+            xCoordinates[position]      = distances.getxCoordinate(cities[position]);
+            yCoordinates[position]      = distances.getyCoordinate(cities[position]);
+        }
+    }
+
+    public int size() {
+        return cities.length;
+    } //get number of cities in the tree
+
+    //start a new search over the tree, with every city still present
+    public Search newSearch() {
+        return new Search();
+    }
+
+    //This class holds the state of one search, cities removed from it stay in the tree for every other search
+    public final class Search {
+        private final boolean[] removed = new boolean[cities.length]; //cities removed from the search, by position
+        private final int[] counts      = subtreeSizes.clone(); //cities still present in the range split at each position
+        private double bestDistance; //squared distance to the nearest city found so far by a query
+        private int bestPosition; //position of the nearest city found so far by a query
+        private double[] heapDistances = new double[0]; //max-heap of the nearest cities found so far by a k-nearest query
+        private int[] heapPositions    = new int[0];
+        private int heapSize;
+        private int excludedPosition; //position of the city a k-nearest query is made from, never returned by it
+
+        //put every city back into the search, so it can be reused for another query session
+        public void reset() {
+            Arrays.fill(removed, false);
+            System.arraycopy(subtreeSizes, 0, counts, 0, counts.length);
+        }
+
+        //remove a city from the search, walking down to it and updating the counts along the way
+        public void remove(int city) {
+            int position = positions[city];
+            if(removed[position]) {
+                return;
+            }
+            removed[position] = true;
+            int lo = 0;
+            int hi = cities.length;
+            while(true) {
+                int mid = (lo + hi) >>> 1;
+                counts[mid]--;
+                if(mid == position) {
+                    break;
+                }
+                if(position < mid) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+        }
+
+        public boolean contains(int city) {
+            return !removed[positions[city]];
+        } //check if a city hasn't been removed from the search
+
+        public int remaining() {
+            return cities.length == 0 ? 0 : counts[cities.length >>> 1];
+        } //get number of cities still present
+
+        //get the present city nearest to the given city, or -1 if there is none
+        public int nearest(int city) {
+            int position = positions[city];
+            return nearest(xCoordinates[position], yCoordinates[position]);
+        }
+
+        //get the present city nearest to a point, or -1 if there is none
+        public int nearest(double x, double y) {
+            bestDistance = Double.POSITIVE_INFINITY;
+            bestPosition = -1;
+            search(x, y, 0, cities.length, 0);
+            return bestPosition < 0 ? -1 : cities[bestPosition];
+        }
+
+        //fill result from offset with up to k present cities nearest to the given city, nearest first, and return how many were found
+        public int nearest(int city, int k, int[] result, int offset) {
+            if(heapDistances.length < k) {
+                heapDistances = new double[k];
+                heapPositions = new int[k];
+            }
+            int position     = positions[city];
+            heapSize         = 0;
+            excludedPosition = position;
+            search(xCoordinates[position], yCoordinates[position], k, 0, cities.length, 0);
+            int found = heapSize;
+            while(heapSize > 0) { //taking the farthest off the heap each time fills the result from the back
+                result[offset + heapSize - 1] = cities[heapPositions[0]];
+                heapDistances[0] = heapDistances[heapSize - 1];
+                heapPositions[0] = heapPositions[heapSize - 1];
+                heapSize--;
+                siftDown(0);
+            }
+            return found;
+        }
+
+        private void search(double x, double y, int k, int lo, int hi, int depth) {
+            if(lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if(counts[mid] == 0) {
+                return;
+            }
+            if(!removed[mid] && mid != excludedPosition) {
+                double deltaX   = x - xCoordinates[mid];
+                double deltaY   = y - yCoordinates[mid];
+                double distance = (deltaX * deltaX) + (deltaY * deltaY);
+                if(heapSize < k) { //heap isn't full yet, add the city and move it up into place
+                    int i = heapSize++;
+                    while(i > 0 && heapDistances[(i - 1) >>> 1] < distance) {
+                        heapDistances[i] = heapDistances[(i - 1) >>> 1];
+                        heapPositions[i] = heapPositions[(i - 1) >>> 1];
+                        i = (i - 1) >>> 1;
+                    }
+                    heapDistances[i] = distance;
+                    heapPositions[i] = mid;
+                } else if(distance < heapDistances[0]) { //closer than the farthest kept, replace it
+                    heapDistances[0] = distance;
+                    heapPositions[0] = mid;
+                    siftDown(0);
+                }
+            }
+            double split      = (depth & 1) == 0 ? x - xCoordinates[mid] : y - yCoordinates[mid];
+            boolean leftFirst = split < 0;
+            search(x, y, k, leftFirst ? lo : mid + 1, leftFirst ? mid : hi, depth + 1);
+            if(heapSize < k || split * split < heapDistances[0]) {
+                search(x, y, k, leftFirst ? mid + 1 : lo, leftFirst ? hi : mid, depth + 1);
+            }
+        }
+
+        private void siftDown(int i) {
+            double distance = heapDistances[i];
+            int position    = heapPositions[i];
+            while(true) {
+                int child = 2 * i + 1;
+                if(child >= heapSize) {
+                    break;
+                }
+                if(child + 1 < heapSize && heapDistances[child + 1] > heapDistances[child]) {
+                    child++;
+                }
+                if(heapDistances[child] <= distance) {
+                    break;
+                }
+                heapDistances[i] = heapDistances[child];
+                heapPositions[i] = heapPositions[child];
+                i = child;
+            }
+            heapDistances[i] = distance;
+            heapPositions[i] = position;
+        }
+
+        private void search(double x, double y, int lo, int hi, int depth) {
+            if(lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if(counts[mid] == 0) { //every city in this range has been removed
+                return;
+            }
+            if(!removed[mid]) {
+                double deltaX   = x - xCoordinates[mid];
+                double deltaY   = y - yCoordinates[mid];
+                double distance = (deltaX * deltaX) + (deltaY * deltaY);
+                if(distance < bestDistance) {
+                    bestDistance = distance;
+                    bestPosition = mid;
+                }
+            }
+            double split = (depth & 1) == 0 ? x - xCoordinates[mid] : y - yCoordinates[mid];
+            if(split < 0) { //search the side of the split holding the point first, the other only if it could be closer
+                search(x, y, lo, mid, depth + 1);
+                if(split * split < bestDistance) {
+                    search(x, y, mid + 1, hi, depth + 1);
+                }
+            } else {
+                search(x, y, mid + 1, hi, depth + 1);
+                if(split * split < bestDistance) {
+                    search(x, y, lo, mid, depth + 1);
+                }
+            }
+        }
+    }
+
+    //arrange cities in the range so the middle one splits it by x on even depths and by y on odd depths
+    private void build(Distances distances, int lo, int hi, int depth) {
+        if(lo >= hi) {
+            return;
+        }
+        int mid           = (lo + hi) >>> 1;
+        subtreeSizes[mid] = hi - lo;
+        select(distances, lo, hi - 1, mid, (depth & 1) == 0);
+        build(distances, lo, mid, depth + 1);
+        build(distances, mid + 1, hi, depth + 1);
+    }
+
+    //partially sort cities between left and right so the one at position k is in its sorted place
+    private void select(Distances distances, int left, int right, int k, boolean byX) {
+        while(right > left) {
+            double pivot = coordinate(distances, cities[(left + right) >>> 1], byX);
+            int i = left;
+            int j = right;
+            while(i <= j) {
+                while(coordinate(distances, cities[i], byX) < pivot) {
+                    i++;
+                }
+                while(coordinate(distances, cities[j], byX) > pivot) {
+                    j--;
+                }
+                if(i <= j) {
+                    int city    = cities[i];
+                    cities[i++] = cities[j];
+                    cities[j--] = city;
+                }
+            }
+            if(k <= j) {
+                right = j;
+            } else if(k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static double coordinate(Distances distances, int city, boolean byX) {
+        return byX ? distances.getxCoordinate(city) : distances.getyCoordinate(city);
+    }
+}
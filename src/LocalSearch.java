@@ -0,0 +1,259 @@
+//This class improves a Route with 2-opt and Or-opt moves until no improving move is left
+//Moves are only tried towards each city's candidate list, every move is priced from the few edges it changes,
+//and cities whose neighbourhood had nothing to offer are left alone (their "don't look bit" is set) until an edge next to them changes
+//A move can also open a move at a city whose candidate had an edge changed, which that city's don't look bit hides, so a whole
+//improve runs pass after pass from every city until a pass makes no move, and improving its result again leaves it as it is
+//One LocalSearch keeps its working arrays between calls, so it must not be shared between threads
+public final class LocalSearch {
+
+    private static final int MAX_SEGMENT  = 3; //Or-opt moves segments of 1 to 3 cities
+    private static final double EPSILON   = 1e-7; //smallest gain worth a move, stops rounding errors from cycling moves
+
+    private final Distances distances;
+    private final CandidateLists candidates;
+    private final int numOfCities;
+    private final int[] tour; //city at each position of the tour being improved
+    private final int[] positions; //position of each city in the tour being improved
+    private final int[] queue; //cities whose don't look bit is off, waiting to be searched from
+    private final boolean[] queued; //cities currently in the queue
+    private final int[] segment = new int[MAX_SEGMENT]; //cities of the segment being moved by Or-opt
+    private int queueHead;
+    private int queueSize;
+
+    public LocalSearch(Distances distances, CandidateLists candidates) {
+        this.distances   = distances;
+        this.candidates  = candidates;
+        this.numOfCities = distances.size();
+        this.tour        = new int[numOfCities];
+        this.positions   = new int[numOfCities];
+        this.queue       = new int[numOfCities];
+        this.queued      = new boolean[numOfCities];
+    }
+
+    //improve a route until no 2-opt or Or-opt move towards a candidate is left, and return it as a new Route,
+    //or the route itself when it had no such move
+    public Route improve(Route route) {
+        int[] cities = route.getTour();
+        load(cities);
+        boolean improved = false;
+        boolean moved;
+        do { //another pass from every city, until one makes no move
+            for(int city : cities) {
+                push(city);
+            }
+            moved     = search();
+            improved |= moved;
+        } while(moved);
+        return improved ? new Route(tour.clone(), distances) : route;
+    }
+
+    //improve a route, starting a single pass only from the given cities, every other city starts with its don't look bit set,
+    //so moves far from those cities may be left, such as after a few cities of a tour changed
+    public Route improve(Route route, int[] activeCities) {
+        load(route.getTour());
+        for(int city : activeCities) {
+            push(city);
+        }
+        return search() ? new Route(tour.clone(), distances) : route;
+    }
+
+    private void load(int[] cities) {
+        System.arraycopy(cities, 0, tour, 0, numOfCities);
+        for(int i = 0; i < numOfCities; i++) {
+            positions[tour[i]] = i;
+        }
+        queueHead = 0;
+        queueSize = 0;
+    }
+
+    //search from the queued cities until every don't look bit is set, returning whether any move was made
+    private boolean search() {
+        boolean improved = false;
+        //smaller tours have too few distinct moves for the segment bookkeeping to be worth it, and moves that reverse part
+        //of the tour can't be priced from their end edges when distances are one-way, so those tours are left as they are
+        if(numOfCities >= 8 && distances.isSymmetric()) {
+            while(queueSize > 0) {
+                int city = pop();
+                if(twoOpt(city) || orOpt(city)) {
+                    improved = true;
+                    push(city); //keep searching from the city while it keeps finding moves
+                }
+            }
+        }
+        while(queueSize > 0) {
+            pop(); //clear don't look bits left over from tours too small to search
+        }
+        return improved;
+    }
+
+    //try to replace two edges next to the city with two shorter ones, by reversing the path between them
+    private boolean twoOpt(int a) {
+        for(int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            int b           = forward ? next(a) : previous(a);
+            double ab       = distances.between(a, b);
+            for(int i = 0; i < candidates.size(); i++) {
+                int c     = candidates.get(a, i);
+                double ac = distances.between(a, c);
+                if(ac >= ab) { //candidates are nearest first, so no later one can shorten the tour either
+                    break;
+                }
+                int d = forward ? next(c) : previous(c);
+                if(c == b || d == a) {
+                    continue;
+                }
+                double delta = ac + distances.between(b, d) - ab - distances.between(c, d);
+                if(delta < -EPSILON) {
+                    if(forward) {
+                        reverse(positions[b], positions[c]); //a b ... c d becomes a c ... b d
+                    } else {
+                        reverse(positions[a], positions[d]); //b a ... d c becomes b d ... a c
+                    }
+                    push(b);
+                    push(c);
+                    push(d);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //try to move a segment of 1 to 3 cities starting at the city, forwards or reversed, between two cities next to one of its candidates
+    private boolean orOpt(int first) {
+        for(int length = 1; length <= MAX_SEGMENT && length <= numOfCities - 4; length++) {
+            int start = positions[first];
+            for(int i = 0; i < length; i++) {
+                segment[i] = tour[(start + i) % numOfCities];
+            }
+            int last         = segment[length - 1];
+            int before       = previous(first);
+            int after        = next(last);
+            double removeGain = distances.between(before, first) + distances.between(last, after) - distances.between(before, after);
+            if(removeGain <= EPSILON) {
+                continue;
+            }
+            for(int end = 0; end < 2; end++) {
+                int endCity = end == 0 ? first : last;
+                for(int i = 0; i < candidates.size(); i++) {
+                    int c = candidates.get(endCity, i);
+                    if(distances.between(endCity, c) >= removeGain) {
+                        break;
+                    }
+                    if(inSegment(c, start, length)) {
+                        continue;
+                    }
+                    //c can be joined to the segment from either side, try the edge after c and the edge before it
+                    if(tryInsert(c, next(c), start, length, before, after, removeGain)
+                            || tryInsert(previous(c), c, start, length, before, after, removeGain)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    //price putting the segment between from and to in both orientations, and make the move if it shortens the tour
+    private boolean tryInsert(int from, int to, int start, int length, int before, int after, double removeGain) {
+        if(inSegment(from, start, length) || inSegment(to, start, length)) {
+            return false;
+        }
+        int first        = segment[0];
+        int last         = segment[length - 1];
+        double edge      = distances.between(from, to);
+        double forwards  = distances.between(from, first) + distances.between(last, to) - edge;
+        double backwards = distances.between(from, last) + distances.between(first, to) - edge;
+        boolean reversed = backwards < forwards;
+        if(Math.min(forwards, backwards) - removeGain >= -EPSILON) {
+            return false;
+        }
+        moveSegment(start, length, from, reversed);
+        push(before);
+        push(after);
+        push(from);
+        push(to);
+        push(first);
+        push(last);
+        return true;
+    }
+
+    //move the segment at start to just after city from, shifting whichever side of the tour is shorter
+    private void moveSegment(int start, int length, int from, boolean reversed) {
+        int segmentEnd = (start + length) % numOfCities; //position just after the segment
+        int fromPos    = positions[from];
+        int afterGap   = (fromPos - segmentEnd + numOfCities) % numOfCities + 1; //cities from just after the segment up to from
+        int beforeGap  = numOfCities - length - afterGap; //cities after from, up to just before the segment
+        if(afterGap <= beforeGap) {
+            //segment, then the cities up to from, becomes those cities then the segment
+            for(int i = 0; i < afterGap; i++) {
+                place(tour[(segmentEnd + i) % numOfCities], (start + i) % numOfCities);
+            }
+            int at = (start + afterGap) % numOfCities;
+            for(int i = 0; i < length; i++) {
+                place(segment[reversed ? length - 1 - i : i], (at + i) % numOfCities);
+            }
+        } else {
+            //the cities after from, then the segment, becomes the segment then those cities
+            int gapStart = (fromPos + 1) % numOfCities;
+            for(int i = beforeGap - 1; i >= 0; i--) {
+                place(tour[(gapStart + i) % numOfCities], (gapStart + i + length) % numOfCities);
+            }
+            for(int i = 0; i < length; i++) {
+                place(segment[reversed ? length - 1 - i : i], (gapStart + i) % numOfCities);
+            }
+        }
+    }
+
+    //reverse the path from position i forwards to position j, or the rest of the tour when that is shorter, which gives the same cycle
+    private void reverse(int i, int j) {
+        int length = (j - i + numOfCities) % numOfCities + 1;
+        if(length * 2 > numOfCities) {
+            int start = (j + 1) % numOfCities;
+            j         = (i - 1 + numOfCities) % numOfCities;
+            i         = start;
+            length    = numOfCities - length;
+        }
+        for(int swaps = length / 2; swaps > 0; swaps--) {
+            int city = tour[i];
+            place(tour[j], i);
+            place(city, j);
+            i = i + 1 == numOfCities ? 0 : i + 1;
+            j = j == 0 ? numOfCities - 1 : j - 1;
+        }
+    }
+
+    private boolean inSegment(int city, int start, int length) {
+        return (positions[city] - start + numOfCities) % numOfCities < length;
+    } //check if a city is one of the length cities from position start
+
+    private void place(int city, int position) {
+        tour[position]  = city;
+        positions[city] = position;
+    }
+
+    private int next(int city) {
+        int position = positions[city] + 1;
+        return tour[position == numOfCities ? 0 : position];
+    }
+
+    private int previous(int city) {
+        int position = positions[city];
+        return tour[position == 0 ? numOfCities - 1 : position - 1];
+    }
+
+    private void push(int city) {
+        if(!queued[city]) {
+            queued[city] = true;
+            queue[(queueHead + queueSize++) % numOfCities] = city;
+        }
+    }
+
+    private int pop() {
+        int city     = queue[queueHead];
+        queueHead    = (queueHead + 1) % numOfCities;
+        queueSize--;
+        queued[city] = false;
+        return city;
+    }
+}
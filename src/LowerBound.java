@@ -0,0 +1,358 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+//This class works out the Held-Karp lower bound on the length of any tour, so a route's optimality gap can be reported
+//and searches can stop once their route is close enough to it
+//A 1-tree is a minimum spanning tree over every city but city 0, plus the two shortest edges from city 0, every tour is a
+//1-tree, so the shortest 1-tree is never longer than the shortest tour. Each city also gets a penalty added to the
+//length of its edges, which leaves the order of tours unchanged, and subgradient ascent raises the penalties of cities
+//with more than two 1-tree edges and lowers those of leaves, pushing the 1-tree towards a tour and the bound upwards
+//Spanning trees are grown by Prim's algorithm along candidate lists, in both directions, which is fast but may miss an
+//edge of the true minimum tree, so up to EXACT_CITIES cities the final bound is worked out again over every pair of
+//cities and proven, above that it is an estimate. Lists can leave groups of cities with no entry between them, such as
+//clusters far apart, so cities next to each other in x or y order but in different groups are made neighbours as well
+//Distances that differ by direction are bounded through the shorter direction of every pair, which never overestimates
+//One LowerBound keeps its working arrays between calls, so it must not be shared between threads
+public final class LowerBound {
+
+    public static final int DEFAULT_ITERATIONS = 200; //subgradient steps taken at most
+    public static final int EXACT_CITIES       = 20_000; //up to this many cities, the final bound is proven over every pair
+
+    private static final int PATIENCE    = 10; //steps without a higher bound before the step size is halved
+    private static final double MIN_STEP = 1e-4; //step scale below which the ascent has converged
+
+    private final Distances distances;
+    private final int numOfCities;
+    private final int[] neighbourStarts; //neighbours of city i are at positions neighbourStarts[i] to neighbourStarts[i + 1]
+    private final int[] neighbours; //candidate lists made symmetric, a city is a neighbour of every city in its list
+    private final double[] penalties;
+    private final int[] degrees; //number of 1-tree edges at each city
+    private final double[] keys; //Prim's shortest edge from the tree to each city outside it
+    private final boolean[] inTree;
+    private final int[] heap; //cities outside the tree with a known edge to it, as a binary heap on their keys
+    private final int[] heapPositions; //position of each city in the heap, -1 when it isn't there
+    private int heapSize;
+    private boolean proven; //whether the last bound was worked out over every pair of cities
+
+    public LowerBound(Distances distances, CandidateLists candidates) {
+        this.distances     = distances;
+        this.numOfCities   = distances.size();
+        this.penalties     = new double[numOfCities];
+        this.degrees       = new int[numOfCities];
+        this.keys          = new double[numOfCities];
+        this.inTree        = new boolean[numOfCities];
+        this.heap          = new int[numOfCities];
+        this.heapPositions = new int[numOfCities];
+
+        int[] bridges = bridges(candidates); //pairs of cities joining groups the candidate lists leave apart
+
+        //count every list entry and bridge in both directions, then fill the lists, an edge listed by both its cities appears twice
+        int size             = candidates.size();
+        this.neighbourStarts = new int[numOfCities + 1];
+        for(int a = 0; a < numOfCities; a++) {
+            for(int i = 0; i < size; i++) {
+                neighbourStarts[a + 1]++;
+                neighbourStarts[candidates.get(a, i) + 1]++;
+            }
+        }
+        for(int bridgeEnd : bridges) {
+            neighbourStarts[bridgeEnd + 1]++;
+        }
+        for(int a = 0; a < numOfCities; a++) {
+            neighbourStarts[a + 1] += neighbourStarts[a];
+        }
+        this.neighbours = new int[neighbourStarts[numOfCities]];
+        int[] filled    = Arrays.copyOf(neighbourStarts, numOfCities);
+        for(int a = 0; a < numOfCities; a++) {
+            for(int i = 0; i < size; i++) {
+                int b                   = candidates.get(a, i);
+                neighbours[filled[a]++] = b;
+                neighbours[filled[b]++] = a;
+            }
+        }
+        for(int i = 0; i < bridges.length; i += 2) {
+            neighbours[filled[bridges[i]]++]     = bridges[i + 1];
+            neighbours[filled[bridges[i + 1]]++] = bridges[i];
+        }
+    }
+
+    //raise the bound for at most DEFAULT_ITERATIONS steps, sizing each step by how far the bound is below upperBound,
+    //the length of a known route
+    public double compute(double upperBound) {
+        return compute(upperBound, DEFAULT_ITERATIONS, 0);
+    }
+
+    //raise the bound for at most maxIterations steps, stopping early once upperBound is within targetGap of it,
+    //such as 0.01 for 1%, and return the highest bound found
+    public double compute(double upperBound, int maxIterations, double targetGap) {
+        proven = false;
+        if(numOfCities < 3) {
+            return 0; //no 1-tree without at least three cities
+        }
+        Arrays.fill(penalties, 0);
+        double[] bestPenalties = new double[numOfCities];
+        double bestBound       = Double.NEGATIVE_INFINITY;
+        double scale           = 2; //step scale, halved whenever the bound stops rising
+        int sinceImprovement   = 0;
+        for(int iteration = 0; iteration < maxIterations && scale >= MIN_STEP; iteration++) {
+            double bound = oneTree(false) - 2 * sum(penalties);
+            if(bound > bestBound) {
+                bestBound        = bound;
+                sinceImprovement = 0;
+                System.arraycopy(penalties, 0, bestPenalties, 0, numOfCities);
+            } else if(++sinceImprovement >= PATIENCE) {
+                scale           /= 2;
+                sinceImprovement = 0;
+            }
+            double squaredNorm = 0; //of the subgradient, the degree of every city less two
+            for(int degree : degrees) {
+                squaredNorm += (degree - 2) * (degree - 2);
+            }
+            if(squaredNorm == 0 || bound >= upperBound || upperBound - bestBound <= targetGap * bestBound) {
+                break; //the 1-tree is a tour, or the bound is already as close to the route as asked for
+            }
+            double step = scale * (upperBound - bound) / squaredNorm;
+            for(int city = 0; city < numOfCities; city++) {
+                penalties[city] += step * (degrees[city] - 2);
+            }
+        }
+
+        System.arraycopy(bestPenalties, 0, penalties, 0, numOfCities);
+        if(numOfCities <= EXACT_CITIES) {
+            bestBound = oneTree(true) - 2 * sum(penalties); //the candidate lists may have missed a shorter tree
+            proven    = true;
+        }
+        return bestBound;
+    }
+
+    public boolean isProven() {
+        return proven;
+    } //get whether the last bound was proven over every pair of cities, rather than estimated along candidate lists
+
+    //length of the shortest 1-tree under the current penalties, over every pair of cities or along the candidate lists,
+    //filling in the degree of every city
+    private double oneTree(boolean everyPair) {
+        Arrays.fill(degrees, 0);
+        double length = everyPair ? denseTree() : sparseTree();
+
+        //the two shortest edges from city 0 close the 1-tree
+        int first           = -1;
+        int second          = -1;
+        double firstWeight  = Double.POSITIVE_INFINITY;
+        double secondWeight = Double.POSITIVE_INFINITY;
+        int from            = everyPair ? 1 : neighbourStarts[0];
+        int to              = everyPair ? numOfCities : neighbourStarts[1];
+        for(int i = from; i < to; i++) {
+            int city = everyPair ? i : neighbours[i];
+            if(city == 0 || city == first) {
+                continue;
+            }
+            double weight = weight(0, city);
+            if(weight < firstWeight) {
+                second       = first;
+                secondWeight = firstWeight;
+                first        = city;
+                firstWeight  = weight;
+            } else if(weight < secondWeight) {
+                second       = city;
+                secondWeight = weight;
+            }
+        }
+        if(second < 0) { //every candidate of city 0 is the same city, take any other
+            second       = first == 1 ? 2 : 1;
+            secondWeight = weight(0, second);
+        }
+        degrees[0]      = 2;
+        degrees[first]++;
+        degrees[second]++;
+        return length + firstWeight + secondWeight;
+    }
+
+    //Prim's algorithm over every pair of cities but city 0, without a heap as every city is a neighbour of every other,
+    //each pass over the cities left outside the tree both shortens their keys and finds the nearest one to add next
+    private double denseTree() {
+        int[] parents   = new int[numOfCities];
+        int[] remaining = new int[numOfCities - 2]; //cities outside the tree, city 0 is left out and city 1 starts it
+        for(int i = 0; i < remaining.length; i++) {
+            remaining[i] = i + 2;
+        }
+        Arrays.fill(keys, Double.POSITIVE_INFINITY);
+        double length = 0;
+        int added     = 1;
+        for(int left = remaining.length; left > 0; left--) {
+            int nearest = 0; //position in remaining of the city to add next
+            for(int i = 0; i < left; i++) {
+                int city      = remaining[i];
+                double weight = weight(added, city);
+                if(weight < keys[city]) {
+                    keys[city]    = weight;
+                    parents[city] = added;
+                }
+                if(keys[city] < keys[remaining[nearest]]) {
+                    nearest = i;
+                }
+            }
+            added              = remaining[nearest];
+            remaining[nearest] = remaining[left - 1];
+            length            += keys[added];
+            degrees[added]++;
+            degrees[parents[added]]++;
+        }
+        return length;
+    }
+
+    //Prim's algorithm along the candidate lists and bridges over every city but city 0
+    private double sparseTree() {
+        int[] parents = new int[numOfCities];
+        Arrays.fill(inTree, false);
+        Arrays.fill(heapPositions, -1);
+        inTree[0]     = true; //left out of the spanning tree
+        heapSize      = 0;
+        double length = 0;
+        int city      = 1; //starts the tree
+        for(int added = 1; added < numOfCities; added++) {
+            if(added > 1) {
+                city    = pollHeap(); //the bridges join every city but city 0, so the heap is never empty here
+                length += keys[city];
+                degrees[city]++;
+                degrees[parents[city]]++;
+            }
+            inTree[city] = true;
+            for(int i = neighbourStarts[city]; i < neighbourStarts[city + 1]; i++) {
+                int neighbour = neighbours[i];
+                if(!inTree[neighbour]) {
+                    double weight = weight(city, neighbour);
+                    if(heapPositions[neighbour] < 0) {
+                        keys[neighbour]    = weight;
+                        parents[neighbour] = city;
+                        pushHeap(neighbour);
+                    } else if(weight < keys[neighbour]) {
+                        keys[neighbour]    = weight;
+                        parents[neighbour] = city;
+                        siftUp(heapPositions[neighbour]);
+                    }
+                }
+            }
+        }
+        return length;
+    }
+
+    //pairs of cities next to each other in x order, then in y order, whose groups the candidate lists leave apart, as a
+    //flat array of pair ends, city 0 is left out as it isn't part of the spanning tree, cities without coordinates are
+    //taken in index order
+    private int[] bridges(CandidateLists candidates) {
+        int[] groups = new int[numOfCities]; //union-find over the candidate lists, leading each group to one of its cities
+        for(int city = 0; city < numOfCities; city++) {
+            groups[city] = city;
+        }
+        for(int a = 1; a < numOfCities; a++) {
+            for(int i = 0; i < candidates.size(); i++) {
+                int b = candidates.get(a, i);
+                if(b != 0) {
+                    groups[find(groups, a)] = find(groups, b);
+                }
+            }
+        }
+
+        int[] bridges = new int[0];
+        int count     = 0;
+        for(int axis = 0; axis < (distances.hasCoordinates() ? 2 : 1); axis++) {
+            Integer[] order = new Integer[numOfCities - 1];
+            for(int i = 0; i < order.length; i++) {
+                order[i] = i + 1;
+            }
+            if(distances.hasCoordinates()) {
+                Arrays.sort(order, axis == 0 ? Comparator.<Integer>comparingDouble(distances::getxCoordinate)
+                        : Comparator.<Integer>comparingDouble(distances::getyCoordinate));
+            }
+            for(int i = 1; i < order.length; i++) {
+                int a = order[i - 1];
+                int b = order[i];
+                if(find(groups, a) != find(groups, b)) {
+                    if(count + 2 > bridges.length) {
+                        bridges = Arrays.copyOf(bridges, Math.max(16, 2 * bridges.length));
+                    }
+                    bridges[count++] = a;
+                    bridges[count++] = b;
+                }
+            }
+        }
+        return Arrays.copyOf(bridges, count);
+    }
+
+    //length of the edge between two cities with both their penalties added, through the shorter direction if they differ
+    private double weight(int a, int b) {
+        double length = distances.isSymmetric() ? distances.between(a, b) : Math.min(distances.between(a, b), distances.between(b, a));
+        return length + penalties[a] + penalties[b];
+    }
+
+    private void pushHeap(int city) {
+        heap[heapSize]      = city;
+        heapPositions[city] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int pollHeap() {
+        int top            = heap[0];
+        heapPositions[top] = -1;
+        if(--heapSize > 0) {
+            heap[0]                = heap[heapSize];
+            heapPositions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int position) {
+        int city = heap[position];
+        while(position > 0) {
+            int parent = (position - 1) >>> 1;
+            if(keys[heap[parent]] <= keys[city]) {
+                break;
+            }
+            heap[position]                = heap[parent];
+            heapPositions[heap[position]] = position;
+            position                      = parent;
+        }
+        heap[position]      = city;
+        heapPositions[city] = position;
+    }
+
+    private void siftDown(int position) {
+        int city = heap[position];
+        while(true) {
+            int child = 2 * position + 1;
+            if(child >= heapSize) {
+                break;
+            }
+            if(child + 1 < heapSize && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            if(keys[heap[child]] >= keys[city]) {
+                break;
+            }
+            heap[position]                = heap[child];
+            heapPositions[heap[position]] = position;
+            position                      = child;
+        }
+        heap[position]      = city;
+        heapPositions[city] = position;
+    }
+
+    //leading city of a city's group, halving the path to it along the way
+    private static int find(int[] groups, int city) {
+        while(groups[city] != city) {
+            groups[city] = groups[groups[city]];
+            city         = groups[city];
+        }
+        return city;
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for(double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,23 @@
+//This interface is told what happened in every generation of a search, for tuning population size and generation count
+//Solvers only gather the numbers when a listener other than NONE is set, so a search without one pays nothing for them
+//IslandGA islands report from their own threads at the same time, so listeners must be safe to call from several threads
+public interface MetricsListener {
+
+    MetricsListener NONE = stats -> { }; //listener that ignores every generation
+
+    void onGeneration(GenerationStats stats);
+
+    //get a listener that passes every generation to both listeners, first then second
+    static MetricsListener both(MetricsListener first, MetricsListener second) {
+        if(first == NONE) {
+            return second;
+        }
+        if(second == NONE) {
+            return first;
+        }
+        return stats -> {
+            first.onGeneration(stats);
+            second.onGeneration(stats);
+        };
+    }
+}
@@ -1,133 +1,243 @@
-import java.util.*;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+
+public final class NearestNeighbour implements Solver {
+
+    //how starting cities are picked when there are more cities than allowed starts
+    public enum Starts {
+        SPREAD, //evenly spaced through the list of cities
+        RANDOM //drawn at random, without repeats
+    }
+
+    private static final int TASKS_PER_THREAD = 4; //split starting cities into a few tasks per thread, so idle threads can steal work
 
-public final class NearestNeighbour {
+    private final Distances distances; //distances between cities, worked out once before the search
+    private final int maxStarts; //most starting cities to build routes from
+    private final Starts starts; //how starting cities are picked when there are more cities than maxStarts
+    private KdTree kdTree; //spatial index over the cities, used to find the nearest unvisited city, built on the first run
+                           //cities without coordinates are searched one by one instead
+    private Route bestRoute; //holds the best Route
 
-    //This class holds the distance between each city and the next
-    private static class CityDistances implements Comparable<CityDistances> {
-        private final double distance;
-        private final City fromCity;
-        private final City toCity;
+    //build a route from every city as the starting point
+    public NearestNeighbour(Distances distances) {
+        this(distances, Integer.MAX_VALUE, Starts.SPREAD);
+    }
 
-        public CityDistances(double distance, City fromCity, City toCity) {
-            this.distance = distance;
-            this.fromCity = fromCity;
-            this.toCity  = toCity;
+    //build routes from at most maxStarts starting cities, picked by the given rule, random starts are drawn from the config's seed
+    public NearestNeighbour(Distances distances, int maxStarts, Starts starts) {
+        this.distances = distances;
+        this.maxStarts = maxStarts;
+        this.starts    = starts;
+    }
+
+    //build routes from the starting cities spread over the fork-join pool, no new starting city is tried once the config's
+    //time budget runs out or a route as short as its target is found, though a route is always built from the first one
+    @Override
+    public Route solve(SolverConfig config, SolverListener listener) {
+        int numOfCities = distances.size(); //set the number of cities to the number of cities in the distance table
+        if(numOfCities <= 2) {
+            System.out.println("Not enough cities"); //K-NN cannot handle just 2 cities
+            return null;
+        }
+        if(kdTree == null && distances.hasCoordinates()) {
+            kdTree = new KdTree(distances);
+        }
+        MetricsListener metrics = config.getMetrics();
+        boolean measured        = metrics != MetricsListener.NONE;
+        long allocatedBefore    = measured ? AllocationCounter.allThreads() : 0;
+        long startTime          = System.nanoTime();
+        int[] startCities       = pickStartCities(numOfCities, Math.max(1, Math.min(maxStarts, numOfCities)), starts, config);
+        int parallelism         = ForkJoinPool.commonPool().getParallelism();
+        int startsPerTask       = Math.max(1, startCities.length / (parallelism * TASKS_PER_THREAD));
+        Progress progress       = new Progress(listener, startTime, config.deadline(startTime), config.getTargetDistance(), measured);
+        //every task keeps only its own shortest route, and the shortest of those becomes the best route
+        this.bestRoute          = ForkJoinPool.commonPool().invoke(new MultiStart(startCities, 0, startCities.length, startsPerTask, progress));
+        if(measured) {
+            //the whole run is reported as one generation, in which each starting city tried is one evaluation
+            int startsTried = progress.startsTried.get();
+            metrics.onGeneration(new GenerationStats("NearestNeighbour", -1, 1, System.nanoTime() - startTime, startsTried,
+                    0, 0, bestRoute.getFitness(), progress.fitnessSum.sum() / startsTried, progress.worstFitness.get(),
+                    Double.NaN, AllocationCounter.allThreads() - allocatedBefore));
         }
+        return bestRoute;
+    }
 
-        public double getDistance() {
-            return distance;
+    //get the best route bestRoute global variable
+    public Route getBestRoute() {
+        return bestRoute;
+    }
+
+    //This class is shared by the tasks of one run, to tell the listener about routes shorter than any other task has found
+    private static final class Progress {
+        private final SolverListener listener;
+        private final long startTime;
+        private final long deadline;
+        private final double targetDistance; //no new starting city is tried once a route is this short
+        private final AtomicInteger startsTried = new AtomicInteger();
+        private final DoubleAdder fitnessSum; //fitness of every route built, only kept when metrics are gathered
+        private final DoubleAccumulator worstFitness; //lowest fitness of any route built, only kept when metrics are gathered
+        private volatile double bestDistance    = Double.POSITIVE_INFINITY; //distance of the last route passed to the listener
+
+        Progress(SolverListener listener, long startTime, long deadline, double targetDistance, boolean measured) {
+            this.listener       = listener;
+            this.startTime      = startTime;
+            this.deadline       = deadline;
+            this.targetDistance = targetDistance;
+            this.fitnessSum     = measured ? new DoubleAdder() : null;
+            this.worstFitness   = measured ? new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY) : null;
         }
 
-        public City getFromCity() {
-            return fromCity;
+        //pass a task's shortest route to the listener if no other task has found a shorter one, copying the journey as the task reuses it
+        synchronized void report(int[] tspJourney, double distance, Distances distances) {
+            if(distance < bestDistance) {
+                bestDistance = distance;
+                listener.onImprovement(new Route(tspJourney.clone(), distances, distance), startsTried.get(), System.nanoTime() - startTime);
+            }
         }
+    }
 
-        public City getToCity() {
-            return toCity;
+    //This task builds routes from a range of starting cities, splitting the range while it is larger than startsPerTask
+    @SuppressWarnings("serial") //tasks are never serialized
+    private final class MultiStart extends RecursiveTask<Route> {
+        private final int[] startCities;
+        private final int from;
+        private final int to;
+        private final int startsPerTask;
+        private final Progress progress;
+
+        MultiStart(int[] startCities, int from, int to, int startsPerTask, Progress progress) {
+            this.startCities   = startCities;
+            this.from          = from;
+            this.to            = to;
+            this.startsPerTask = startsPerTask;
+            this.progress      = progress;
         }
 
-        //Allows distances to be compared to one another, makes sorting possible
         @Override
-        public int compareTo(CityDistances d) {
-            return Double.compare(distance, d.getDistance());
+        protected Route compute() {
+            if(to - from <= startsPerTask) {
+                return buildBestRoute(startCities, from, to, progress);
+            }
+            int mid           = (from + to) >>> 1;
+            MultiStart second = new MultiStart(startCities, mid, to, startsPerTask, progress);
+            second.fork();
+            Route first       = new MultiStart(startCities, from, mid, startsPerTask, progress).compute();
+            Route other       = second.join();
+            if(first == null || other == null) {
+                return first == null ? other : first; //a task that ran out of time before its first start has no route
+            }
+            //keep the earlier start on ties, so the result doesn't depend on how the work was scheduled
+            return other.getDistance() < first.getDistance() ? other : first;
         }
     }
 
-    private final ArrayList<City> citiesNotSearched = new ArrayList<City>(); //holds list of cities as they are searched
-    private final ArrayList<City> citiesNotVisited  = new ArrayList<City>(); //holds list of cities as they are "visited" or selected
-    private final ArrayList<City> tspJourney        = new ArrayList<City>(); //used to build out the tsp travelling path
-    private final ArrayList<Route> bestRoutes       = new ArrayList<Route>(); //holds a list of best routes
-    private Route bestRoute; //holds the best Route
-
-    public NearestNeighbour(ArrayList<City> cities) {
-        int numOfCities = cities.size(); //set the number of cities to the size of the cities list
-        if(numOfCities <= 2) {
-            System.out.println("Not enough cities"); //K-NN cannot handle just 2 cities
-        } else {
-            for(int a = 1; a <= numOfCities; a++) {
-                ArrayList<City> citiesSwapped = new ArrayList<>(cities); //a new list which is an exact copy of the cities list
-                if(a > 1) { //If the algorithm has already run once
-                    //make the index position of this list the next city, which will them be searched for the Nearest Neighbour
-                    Collections.swap(citiesSwapped, 0, a - 1);
-                    //clear out lists
-                    tspJourney.clear();
-                    citiesNotSearched.clear();
-                    citiesNotVisited.clear();
-                }
-                tspJourney.add(citiesSwapped.get(0)); //start travelling path with a city to be searched
-                citiesNotSearched.addAll(citiesSwapped); //add to unsearched and unvisited lists
-                citiesNotVisited.addAll(citiesSwapped);
-                //Add first city back into the list, to be the last city to be visited as tsp goes back to the starting point
-                citiesNotVisited.add(citiesNotVisited.get(0));
-
-                //loop through cities and get the nearest city
-                for(int i = 1; i < numOfCities; i++) {
-                    City nearestCity = findNearestNeighbour(citiesNotSearched); //find nearest city from a list of cities
-                    citiesNotSearched.remove(citiesNotSearched.get(0)); //remove first city from list, as it was used as the point of search
-                    citiesNotSearched.remove(nearestCity); //also remove the city picked as nearest
-                    citiesNotSearched.add(0, nearestCity); //now add nearest city back into list in index 0 for it to be used as next point for search
+    //builds a route from each starting city in the range, reusing one search and two journey arrays for all of them,
+    //returns null if the deadline passed before any route was built
+    private Route buildBestRoute(int[] startCities, int from, int to, Progress progress) {
+        int numOfCities      = distances.size();
+        KdTree.Search search = kdTree == null ? null : kdTree.newSearch(); //holds the cities not yet visited
+        int[] tspJourney     = new int[numOfCities]; //used to build out the tsp travelling path
+        int[] bestJourney    = new int[numOfCities]; //shortest travelling path built so far by this task
+        double bestDistance  = Double.POSITIVE_INFINITY;
+
+        for(int i = from; i < to; i++) {
+            if(i > 0 && (System.nanoTime() >= progress.deadline || progress.bestDistance <= progress.targetDistance)) {
+                break; //out of time or short enough, only the very first starting city is always tried
+            }
+            double distance = search == null ? scanJourney(startCities[i], tspJourney) : buildJourney(startCities[i], search, tspJourney);
+            progress.startsTried.incrementAndGet();
+            if(progress.fitnessSum != null) {
+                progress.fitnessSum.add(1 / distance);
+                progress.worstFitness.accumulate(1 / distance);
+            }
+            if(distance < bestDistance) { //keep the shorter path by swapping arrays, rather than copying it
+                int[] swap   = bestJourney;
+                bestJourney  = tspJourney;
+                tspJourney   = swap;
+                bestDistance = distance;
+                if(distance < progress.bestDistance) {
+                    progress.report(bestJourney, distance, distances);
                 }
-                ArrayList<City> tspJourneyChecked = new ArrayList<City>(tspJourney);
-                bestRoutes.add(new Route(tspJourneyChecked)); //Add best routes for each city into bestRoutes list
             }
-            //call this function to set bestRoute variable to the shortest route of the bestRoutes list
-            setBestRoute();
         }
+        return bestDistance == Double.POSITIVE_INFINITY ? null : new Route(bestJourney, distances);
     }
 
-    //accepts a list of cities, returns the city nearest to the one in the first position of the array
-    private City findNearestNeighbour(ArrayList<City> cities) {
-
-        int citiesSize = cities.size(); //set the number of cities into a local variable
-        if(citiesSize == 2) {
-            tspJourney.add(citiesNotSearched.get(citiesSize - 1));
-            return citiesNotSearched.get(0); //in the case of two cities, return the next city
-        } else {
-
-            ArrayList<CityDistances> distances = new ArrayList<CityDistances>(); //hold each city in the list and its distance with the next
-            for(int i = 1; i < citiesSize; i++) { //loop through all cities in the city list
-                //get distance of first city in list compared to another and set as a new distance added to the list of city distances
-                double distance = getDistance(
-                        cities.get(0).getxCoordinate(),
-                        cities.get(0).getyCoordinate(),
-                        cities.get(i).getxCoordinate(),
-                        cities.get(i).getyCoordinate()
-                );
-                distances.add(new CityDistances(
-                        distance,
-                        cities.get(0),
-                        cities.get(i)
-                ));
-            }
-            Collections.sort(distances); //sort all the distances, city with the shortest distance to the selected city moves top
-
-            CityDistances closestCity = distances.get(0); //get city with the shortest distance as the closest city
-
-            citiesNotVisited.remove(closestCity.getToCity()); //since the closest city to the next has now been "visited", remove from list of unvisited cities
-            //add closest city to selected city into the tsp journey
-            tspJourney.add(closestCity
-                    .getToCity()
-            );
-            return closestCity.getToCity(); //return the closest city to the selected
+    //builds the travelling path from a starting city, always moving on to the nearest city not yet visited, and returns its distance
+    private double buildJourney(int startCity, KdTree.Search search, int[] tspJourney) {
+        int numOfCities = tspJourney.length;
+        double distance = 0;
+
+        search.reset();
+        tspJourney[0] = startCity; //start travelling path with a city to be searched
+        search.remove(startCity);
+        for(int i = 1; i < numOfCities; i++) {
+            int nearestCity = search.nearest(tspJourney[i - 1]); //find nearest unvisited city to the last city travelled to
+            search.remove(nearestCity); //since the nearest city has now been "visited", remove it from the search
+            tspJourney[i] = nearestCity;
+            distance += distances.between(tspJourney[i - 1], nearestCity);
         }
+        return distance + distances.between(tspJourney[numOfCities - 1], startCity);
     }
 
-    //get distance between two points 1 and 2
-    private double getDistance(double x1, double y1, double x2, double y2) {
-        double deltaX = x1 - x2;
-        double deltaY = y1 - y2;
-        return Math.sqrt((deltaX * deltaX) + (deltaY * deltaY));
-    }
+    //builds the travelling path like buildJourney, but looks through every unvisited city for the nearest one, for cities
+    //without coordinates, unvisited cities are kept at the end of the journey array, so each step only looks past the cities visited
+    private double scanJourney(int startCity, int[] tspJourney) {
+        int numOfCities = tspJourney.length;
+        double distance = 0;
 
-    //sorts the bestRoutes list to determine shortest route then sets shortest route to the bestRoute global variable
-    private void setBestRoute() {
-        bestRoutes.sort(Collections.reverseOrder()); //routes are sorted according to fitness, best fit routes move top
-        this.bestRoute = bestRoutes.get(0); //first route in list, which should be the fittest and shortest is returned
+        for(int i = 0; i < numOfCities; i++) {
+            tspJourney[i] = i;
+        }
+        tspJourney[0]         = startCity;
+        tspJourney[startCity] = 0;
+        for(int i = 1; i < numOfCities; i++) {
+            int lastCity         = tspJourney[i - 1];
+            int nearest          = i;
+            double nearestLength = distances.between(lastCity, tspJourney[i]);
+            for(int j = i + 1; j < numOfCities; j++) {
+                double length = distances.between(lastCity, tspJourney[j]); //distance leaving the last city, which matters when distances are one-way
+                if(length < nearestLength) {
+                    nearest       = j;
+                    nearestLength = length;
+                }
+            }
+            int nearestCity     = tspJourney[nearest];
+            tspJourney[nearest] = tspJourney[i];
+            tspJourney[i]       = nearestCity;
+            distance           += nearestLength;
+        }
+        return distance + distances.between(tspJourney[numOfCities - 1], startCity);
     }
 
-    //get the best route bestRoute global variable
-    public Route getBestRoute() {
-        return bestRoute;
+    //picks count starting cities out of numOfCities, every city when count covers them all
+    private static int[] pickStartCities(int numOfCities, int count, Starts starts, SolverConfig config) {
+        int[] startCities = new int[count];
+        if(count == numOfCities) {
+            for(int i = 0; i < count; i++) {
+                startCities[i] = i;
+            }
+        } else if(starts == Starts.SPREAD) {
+            for(int i = 0; i < count; i++) {
+                startCities[i] = (int)((long)i * numOfCities / count);
+            }
+        } else {
+            //partial shuffle, only the first count positions are drawn
+            int[] cities = new int[numOfCities];
+            for(int i = 0; i < numOfCities; i++) {
+                cities[i] = i;
+            }
+            SplittableRandom random = config.newRandom();
+            for(int i = 0; i < count; i++) {
+                int swapWith     = i + random.nextInt(numOfCities - i);
+                startCities[i]   = cities[swapWith];
+                cities[swapWith] = cities[i];
+            }
+        }
+        return startCities;
     }
-
 }
@@ -0,0 +1,242 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//This class keeps one JVM running to solve many instances, so JVM startup and JIT warmup are only paid once
+//Instances are solved on a fixed pool of worker threads, one per core by default, each with nearest neighbour from a few
+//starting cities improved by 2-opt / Or-opt local search, and the best tours of recently solved instances are kept in a
+//TourCache, so an instance seen before is answered from the cache whatever its file is called or however its cities are ordered
+//Requests are instance file paths, read from a directory, or one per line from stdin or from connections to a local port,
+//and every request is answered with one line of JSON, in the order the requests came in
+//usage: SolveService [-threads n] [-cache n] [-starts n] [-time ms] (-dir folder | -stdin | -port n)
+public final class SolveService {
+
+    public static final int DEFAULT_CACHE_SIZE = 1_000; //tours of the 1000 most recently solved instances are kept
+    public static final int DEFAULT_STARTS     = 64; //nearest neighbour tries 64 spread starting cities per instance
+
+    private final ExecutorService workers;
+    private final InstanceCache instances; //loads instance files, reusing their binary caches
+    private final TourCache tours;
+    private final SolverConfig config; //limits each nearest neighbour run, shared as solvers only read it
+    private final int maxStarts;
+
+    //solve on the given number of worker threads, caching the tours of up to cacheSize instances
+    public SolveService(int threads, int cacheSize, int maxStarts, SolverConfig config) {
+        this.workers   = Executors.newFixedThreadPool(threads);
+        this.instances = new InstanceCache(new CityLoader(), CandidateLists.DEFAULT_SIZE);
+        this.tours     = new TourCache(cacheSize);
+        this.config    = config;
+        this.maxStarts = maxStarts;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads    = Runtime.getRuntime().availableProcessors();
+        int cacheSize  = DEFAULT_CACHE_SIZE;
+        int maxStarts  = DEFAULT_STARTS;
+        long timeLimit = 0; //time budget of each nearest neighbour run in milliseconds, 0 for none
+        String mode    = null;
+        String target  = null; //folder or port, depending on the mode
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-cache":
+                    cacheSize = Integer.parseInt(args[++i]);
+                    break;
+                case "-starts":
+                    maxStarts = Integer.parseInt(args[++i]);
+                    break;
+                case "-time":
+                    timeLimit = Long.parseLong(args[++i]);
+                    break;
+                case "-dir":
+                case "-port":
+                    mode   = args[i];
+                    target = args[++i];
+                    break;
+                case "-stdin":
+                    mode = args[i];
+                    break;
+                default:
+                    mode = null; //unknown option, print usage
+                    i    = args.length;
+            }
+        }
+        if(mode == null) {
+            System.out.println("usage: SolveService [-threads n] [-cache n] [-starts n] [-time ms] (-dir folder | -stdin | -port n)");
+            return;
+        }
+
+        SolverConfig config = new SolverConfig();
+        if(timeLimit > 0) {
+            config.setTimeBudget(timeLimit, TimeUnit.MILLISECONDS);
+        }
+        SolveService service = new SolveService(threads, cacheSize, maxStarts, config);
+        PrintWriter out      = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        if(mode.equals("-dir")) {
+            service.solveDirectory(Paths.get(target), out);
+        } else if(mode.equals("-stdin")) {
+            service.serve(new InputStreamReader(System.in, StandardCharsets.UTF_8), out);
+        } else {
+            service.listen(Integer.parseInt(target)); //runs until the process is stopped
+        }
+        service.shutdown();
+    }
+
+    //solve every instance file in a folder, skipping the binary caches kept next to them
+    public void solveDirectory(Path folder, Writer out) throws IOException, InterruptedException {
+        StringBuilder requests = new StringBuilder();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(folder)) {
+            for(Path file : files) {
+                String name = file.getFileName().toString();
+                if(Files.isRegularFile(file) && !name.endsWith(InstanceCache.EXTENSION) && !name.endsWith(".tmp")) {
+                    requests.append(file).append('\n');
+                }
+            }
+        }
+        serve(new StringReader(requests.toString()), out);
+    }
+
+    //accept connections on a port of this machine only, answering each connection's requests until it closes
+    public void listen(int port) throws IOException {
+        try(ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            while(true) {
+                Socket socket     = server.accept();
+                Thread connection = new Thread(() -> {
+                    try(Socket closing = socket) {
+                        serve(new InputStreamReader(closing.getInputStream(), StandardCharsets.UTF_8),
+                                new OutputStreamWriter(closing.getOutputStream(), StandardCharsets.UTF_8));
+                    } catch (IOException | InterruptedException e) { //a client that goes away only ends its own connection
+                        System.err.println("Connection closed: " + e.getMessage());
+                    }
+                });
+                connection.setDaemon(true);
+                connection.start();
+            }
+        }
+    }
+
+    //read one instance path per line and answer each with a line of JSON, in request order, returning once every request
+    //is answered, requests are solved in parallel while answers are written by a thread of their own
+    public void serve(Reader requests, Writer out) throws IOException, InterruptedException {
+        LinkedBlockingQueue<Future<String>> answers = new LinkedBlockingQueue<Future<String>>();
+        Future<String> end                          = workers.submit(() -> null); //marks the end of the requests
+        PrintWriter writer                          = new PrintWriter(out);
+        Thread answerer = new Thread(() -> {
+            try {
+                for(Future<String> answer = answers.take(); answer != end; answer = answers.take()) {
+                    writer.println(answer.get());
+                    writer.flush(); //clients on stdin or a socket wait for each answer
+                }
+            } catch (InterruptedException | ExecutionException e) { //solve catches its own errors, so this only happens on shutdown
+                Thread.currentThread().interrupt();
+            }
+        });
+        answerer.start();
+
+        BufferedReader reader = new BufferedReader(requests);
+        String line;
+        while((line = reader.readLine()) != null) {
+            String filePath = line.trim();
+            if(!filePath.isEmpty()) {
+                answers.put(workers.submit(() -> solve(filePath)));
+            }
+        }
+        answers.put(end);
+        answerer.join();
+    }
+
+    //solve one instance file, answering from the tour cache when the same cities were solved before,
+    //returns a line of JSON with the route, or with the error if the instance couldn't be solved
+    //the cache is looked up over distances computed on demand, so a hit never builds a matrix of every pair of cities
+    public String solve(String filePath) {
+        long startTime = System.nanoTime();
+        try {
+            TspInstance instance = instances.loadCities(filePath);
+            if(instance.getCities().size() <= 2) {
+                return error(filePath, "Not enough cities");
+            }
+            Distances distances = instance.isExplicit() ? instance.getDistances() : new Distances(instance.getCities(), true, instance.isRounded());
+            Route route         = tours.lookup(distances);
+            boolean cached      = route != null;
+            if(!cached) {
+                instance    = instances.complete(filePath, instance); //candidate lists, and a cache file if there wasn't one
+                distances   = instance.getDistances();
+                Route start = new NearestNeighbour(distances, maxStarts, NearestNeighbour.Starts.SPREAD).solve(config, SolverListener.NONE);
+                route       = new LocalSearch(distances, instance.getCandidates()).improve(start);
+                tours.store(route);
+            }
+            return answer(filePath, route, cached, System.nanoTime() - startTime);
+        } catch (IOException | RuntimeException e) {
+            return error(filePath, e.toString());
+        }
+    }
+
+    //stop the workers once the requests already taken are solved
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private static String answer(String filePath, Route route, boolean cached, long elapsedNanos) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"file\":");
+        appendString(json, filePath);
+        json.append(",\"cities\":").append(route.size());
+        json.append(",\"distance\":").append(route.getDistance());
+        json.append(",\"cached\":").append(cached);
+        json.append(",\"millis\":").append(elapsedNanos / 1_000_000);
+        json.append(",\"route\":[");
+        for(int i = 0; i < route.size(); i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            appendString(json, route.getDistances().getCity(route.getTour()[i]).getName());
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String error(String filePath, String message) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"file\":");
+        appendString(json, filePath);
+        json.append(",\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    //append a string as a JSON string literal, escaping quotes, backslashes and control characters
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if(c < 0x20) {
+                json.append(String.format("\\u%04x", (int)c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
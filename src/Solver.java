@@ -0,0 +1,7 @@
+//This interface is implemented by every algorithm that builds a Route through all the cities
+public interface Solver {
+
+    //search for the shortest route within the limits of the config, telling the listener each time a shorter route is found,
+    //and return the shortest route found
+    Route solve(SolverConfig config, SolverListener listener);
+}
@@ -0,0 +1,205 @@
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+//This class holds the limits and settings a Solver runs with, every setter returns the config so they can be chained
+//Defaults match the original GA: a population of 2000 over 200 generations with a 1.5% mutation rate, and no time limit
+public final class SolverConfig {
+
+    private long timeBudgetNanos   = Long.MAX_VALUE; //how long a search may run, by default as long as it needs
+    private int maxGenerations     = 200; //most generations the GA runs
+    private int stallGenerations   = Integer.MAX_VALUE; //generations without a shorter route before the GA gives up
+    private int populationSize     = 2000; //routes in each GA generation
+    private double mutationRate    = 0.015; //chance of each route being mutated
+    private GA.Selection selection = GA.Selection.TRUNCATION; //how GA survivors are picked
+    private long seed; //seed for every random choice, only used once set
+    private boolean seeded; //whether a seed has been set, otherwise every run is different
+    private int islands = ForkJoinPool.commonPool().getParallelism(); //IslandGA islands, one per thread of the pool unless set
+    private double constructedFraction; //share of the GA's first population built by TourConstructor rather than shuffled
+    private double targetDistance; //searches stop once their route is this short, by default never as no route is shorter than 0
+    private Path checkpointFile; //the GA saves its state here every checkpointInterval generations, when set
+    private int checkpointInterval;
+    private boolean resume; //whether the GA carries on from the state saved in the checkpoint file, when there is one
+    private MetricsListener metrics = MetricsListener.NONE; //told about every generation, by default no numbers are gathered
+
+    public SolverConfig setTimeBudget(long duration, TimeUnit unit) {
+        this.timeBudgetNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    public SolverConfig setMaxGenerations(int maxGenerations) {
+        this.maxGenerations = maxGenerations;
+        return this;
+    }
+
+    public SolverConfig setStallGenerations(int stallGenerations) {
+        this.stallGenerations = stallGenerations;
+        return this;
+    }
+
+    public SolverConfig setPopulationSize(int populationSize) {
+        if(populationSize < 2 || populationSize % 2 != 0) {
+            throw new IllegalArgumentException("Population size must be even and at least 2, was " + populationSize);
+        }
+        this.populationSize = populationSize;
+        return this;
+    }
+
+    public SolverConfig setMutationRate(double mutationRate) {
+        this.mutationRate = mutationRate;
+        return this;
+    }
+
+    public SolverConfig setSelection(GA.Selection selection) {
+        this.selection = selection;
+        return this;
+    }
+
+    public SolverConfig setSeed(long seed) {
+        this.seed   = seed;
+        this.seeded = true;
+        return this;
+    }
+
+    //run IslandGA as this many islands, a seed only gives the same route again with the same number of islands,
+    //so set it when a run has to be repeated on a machine with a different number of cores
+    public SolverConfig setIslands(int islands) {
+        if(islands < 1) {
+            throw new IllegalArgumentException("Number of islands must be at least 1, was " + islands);
+        }
+        this.islands = islands;
+        return this;
+    }
+
+    //build this share of the GA's first population with TourConstructor, the first as a Hilbert curve tour, the second
+    //by greedy edge and the rest by randomized nearest neighbour, the remaining routes are shuffled at random as before
+    public SolverConfig setConstructedFraction(double constructedFraction) {
+        if(constructedFraction < 0 || constructedFraction > 1) {
+            throw new IllegalArgumentException("Constructed fraction must be between 0 and 1, was " + constructedFraction);
+        }
+        this.constructedFraction = constructedFraction;
+        return this;
+    }
+
+    //stop searching as soon as the route is within gap of a lower bound on every tour, such as 0.01 for 1% above it,
+    //a lower bound of 0 takes the target away again
+    public SolverConfig setTargetGap(double lowerBound, double gap) {
+        if(lowerBound < 0 || gap < 0) {
+            throw new IllegalArgumentException("Lower bound and gap must not be negative, were " + lowerBound + " and " + gap);
+        }
+        this.targetDistance = lowerBound * (1 + gap);
+        return this;
+    }
+
+    //save the GA's state to a file every so many generations and when it stops, in the background, so the run can be resumed
+    public SolverConfig setCheckpoint(Path checkpointFile, int checkpointInterval) {
+        if(checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1 generation, was " + checkpointInterval);
+        }
+        this.checkpointFile     = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    //carry on from the state saved in the checkpoint file rather than spawning a new population, when the file holds one
+    //saved for the same cities, the generation limit counts the generations bred before the checkpoint too
+    public SolverConfig setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    public SolverConfig setMetrics(MetricsListener metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public long getTimeBudgetNanos() {
+        return timeBudgetNanos;
+    }
+
+    public int getMaxGenerations() {
+        return maxGenerations;
+    }
+
+    public int getStallGenerations() {
+        return stallGenerations;
+    }
+
+    public int getPopulationSize() {
+        return populationSize;
+    }
+
+    public double getMutationRate() {
+        return mutationRate;
+    }
+
+    public GA.Selection getSelection() {
+        return selection;
+    }
+
+    public int getIslands() {
+        return islands;
+    }
+
+    public double getConstructedFraction() {
+        return constructedFraction;
+    }
+
+    public double getTargetDistance() {
+        return targetDistance;
+    }
+
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public MetricsListener getMetrics() {
+        return metrics;
+    }
+
+    //get the time by which a search started at startTime (from System.nanoTime) must stop
+    public long deadline(long startTime) {
+        long deadline = startTime + timeBudgetNanos;
+        return deadline < startTime ? Long.MAX_VALUE : deadline; //no time budget overflows, which means no deadline
+    }
+
+    //get whether a route is short enough for the search to stop, no route at all never is
+    public boolean reachedTarget(Route route) {
+        return route != null && route.getDistance() <= targetDistance;
+    }
+
+    //get a new config with the same settings, so one can be changed without changing the other
+    public SolverConfig copy() {
+        SolverConfig copy        = new SolverConfig();
+        copy.timeBudgetNanos     = timeBudgetNanos;
+        copy.maxGenerations      = maxGenerations;
+        copy.stallGenerations    = stallGenerations;
+        copy.populationSize      = populationSize;
+        copy.mutationRate        = mutationRate;
+        copy.selection           = selection;
+        copy.seed                = seed;
+        copy.seeded              = seeded;
+        copy.islands             = islands;
+        copy.constructedFraction = constructedFraction;
+        copy.targetDistance      = targetDistance;
+        copy.checkpointFile      = checkpointFile;
+        copy.checkpointInterval  = checkpointInterval;
+        copy.resume              = resume;
+        copy.metrics             = metrics;
+        return copy;
+    }
+
+    //get a new random stream, from the seed when one is set
+    public SplittableRandom newRandom() {
+        return seeded ? new SplittableRandom(seed) : new SplittableRandom();
+    }
+}
@@ -0,0 +1,10 @@
+//This interface is told about every shorter route a Solver finds while it is still searching
+//Solvers that search on several threads may call it from any of them, but never from two at once
+public interface SolverListener {
+
+    SolverListener NONE = (bestRoute, iteration, elapsedNanos) -> { }; //listener that ignores every route
+
+    //called with the shortest route so far, the generation (or for NearestNeighbour, the number of starting cities tried)
+    //it was found in, and the time since the search started
+    void onImprovement(Route bestRoute, int iteration, long elapsedNanos);
+}
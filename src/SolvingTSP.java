@@ -1,66 +1,102 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+
+import java.nio.file.Paths;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class SolvingTSP {
-    public static void main(String[] args) {
 
-        String filePath               = "tspfiles/test4-20.txt"; //set file path
-        BufferedReader bufferedReader = null;
-        String line                   = "";
+    private static final int DECOMPOSE_CITIES    = 20_000; //above this many cities only the decomposition solver is run
+    private static final int CHECKPOINT_INTERVAL = 100; //-checkpoint saves the genetic algorithm's state every 100 generations
 
-        ArrayList<City> cities        = new ArrayList<City>(); //cities from files are populated into this list
-        ArrayList<String> cityKeys    = new ArrayList<>(); //add up cities coordinates as keys into this array to allow check for duplicates
+    public static void main(String[] args) {
 
-        try {
+        boolean quiet     = false; //-quiet stops every city being printed as it is loaded
+        boolean jfr       = false; //-jfr records every generation as a Flight Recorder event
+        String tracePath  = null; //-trace <file> writes every generation to a file, one line of JSON each
+        double targetGap  = -1; //-gap <fraction> stops the genetic algorithms once within this gap of the lower bound, such as 0.01
+        int islands       = -1; //-islands <n> runs the island-model genetic algorithm as n islands, by default one per core
+        String checkpoint = null; //-checkpoint <file> saves the genetic algorithm's state to a file as it runs
+        boolean resume    = false; //-resume carries the genetic algorithm on from the state in the checkpoint file, if there is one
+        String filePath   = "tspfiles/test4-20.txt"; //set file path
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("-quiet")) {
+                quiet = true;
+            } else if(args[i].equals("-jfr")) {
+                jfr = true;
+            } else if(args[i].equals("-trace") && i + 1 < args.length) {
+                tracePath = args[++i];
+            } else if(args[i].equals("-gap") && i + 1 < args.length) {
+                targetGap = Double.parseDouble(args[++i]);
+            } else if(args[i].equals("-islands") && i + 1 < args.length) {
+                islands = Integer.parseInt(args[++i]);
+            } else if(args[i].equals("-checkpoint") && i + 1 < args.length) {
+                checkpoint = args[++i];
+            } else if(args[i].equals("-resume")) {
+                resume = true;
+            } else {
+                filePath = args[i];
+            }
+        }
 
-            bufferedReader = new BufferedReader(new FileReader(filePath));
-            while ((line = bufferedReader.readLine()) != null) { //loop through each line in the file
-
-                // use whitespace, comma, space, pipe and semicolon as separators
-                String[] cols      = line.trim().split("\\s+|[, |;]");
-                String name        = cols[0]; //set first colon as city name
-                double xCoordinate = Double.parseDouble(cols[1]); //set second colon as the city's x coordinate, parse as a double
-                double yCoordinate = Double.parseDouble(cols[2]); //set third colon as the city's y coordinate, parse as a double
-                String currentKey  = xCoordinate + ":" + yCoordinate; //make a key from each city coordinate passed from file line
-
-                System.out.println(""+ name + "|" + xCoordinate + "|" + yCoordinate); //print out cities
-
-                //check if current city (key of the coordinates) already exists in cityKeys, allows filtering of duplicates
-                if(!cityKeys.contains(currentKey)) {
-                    //Add coordinates as a new City since it doesn't already exist
-                    cities.add(new City(
-                            name,
-                            xCoordinate,
-                            yCoordinate
-                    ));
-                    cityKeys.add(currentKey); //add file entry as a key into the cityKeys list
-                } else {
-                    System.out.println("Duplicate Found: "+ name + "|" + xCoordinate + "|" + yCoordinate); //print out duplicate city
-                }
+        TspInstance instance;
+        MetricsListener metrics = MetricsListener.NONE; //no numbers are gathered unless asked for
+        PrintStream trace       = null;
+        try {
+            //cities with the same coordinates as an earlier one are dropped, and the result is cached next to the file for later runs
+            CityLoader loader = new CityLoader(quiet ? null : System.out);
+            instance          = new InstanceCache(loader, CandidateLists.DEFAULT_SIZE).load(filePath);
+            if(tracePath != null) {
+                trace   = new PrintStream(new FileOutputStream(tracePath));
+                metrics = new JsonLinesMetrics(trace);
             }
         } catch (IOException e) { //handle any exception that could occur
             e.printStackTrace(); //print out exception
-        } finally {
-            //attempt to close the file reader and print any exception
-            if (bufferedReader != null) {
-                try {
-                    bufferedReader.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+            return;
         }
+        ArrayList<City> cities = instance.getCities();
 
         System.out.println("\nNUMBER OF CITIES: " + cities.size()); //print number of cities
 
+        Distances distances = instance.getDistances(); //distances between cities are worked out once, shared by every algorithm
+        if(jfr) {
+            JfrMetrics jfrMetrics = JfrMetrics.create();
+            if(jfrMetrics == null) {
+                System.out.println("Flight Recorder isn't available on this JVM, no events will be recorded");
+            } else {
+                metrics = MetricsListener.both(metrics, jfrMetrics);
+            }
+        }
+        SolverConfig config = new SolverConfig().setMetrics(metrics); //run each algorithm with its default limits
+
+        if(cities.size() > DECOMPOSE_CITIES) { //searching every starting city, or a population of whole routes, would take hours
+            System.out.println("\nUSING DECOMPOSITION INTO CLUSTERS");
+            long decompositionStartTime = System.nanoTime(); //start time for decomposition
+
+            DecompositionSolver decomposition = new DecompositionSolver(distances); //split into clusters, solve each, stitch and repair
+            decomposition.solve(config, SolverListener.NONE);
+
+            System.out.println("BEST ROUTE: " + decomposition.getBestRoute().getRouteAsString()); //print the best route
+            System.out.println("DISTANCE: " + decomposition.getBestRoute().getDistance()); //print the distance
+
+            long decompositionEndTime   = System.nanoTime(); //stop time for decomposition
+
+            System.out.println("DURATION (in Seconds): " + (double)(decompositionEndTime - decompositionStartTime) / 1_000_000_000.0); //print duration in seconds
+            if(trace != null) {
+                trace.close();
+            }
+            return;
+        }
+
         //Use K-Nearest Neighbour Algorithm
         System.out.println("\nUSING K-NEAREST NEIGHBOUR ALGORITHM");
 
         long nnStartTime = System.nanoTime(); //start time for k-nn algorithm
-        NearestNeighbour nearestNeighbour = new NearestNeighbour(cities); //call NearestNeighbour class and parse cities into constructor
+        NearestNeighbour nearestNeighbour = new NearestNeighbour(distances); //call NearestNeighbour class and parse the cities and their distances into constructor
+        nearestNeighbour.solve(config, SolverListener.NONE);
 
         System.out.println("BEST ROUTE: " + nearestNeighbour.getBestRoute().getRouteAsString()); //print the best route
         System.out.println("DISTANCE: " + nearestNeighbour.getBestRoute().getDistance()); //print the distance
@@ -69,34 +105,100 @@ public class SolvingTSP {
 
         System.out.println("DURATION (in Seconds): " + (double)(nnEndTime - nnStartTime) / 1_000_000_000.0); //print duration in seconds
 
+        CandidateLists candidates = instance.getCandidates(); //nearest cities to each city, used by local search and the lower bound
+        LocalSearch localSearch   = new LocalSearch(distances, candidates);
+
+        //Held-Karp lower bound, no tour is shorter, so each route's gap above it shows how far from optimal it can be
+        LowerBound lowerBound = new LowerBound(distances, candidates);
+        double bound          = lowerBound.compute(nearestNeighbour.getBestRoute().getDistance());
+        System.out.println("\nLOWER BOUND: " + bound + (lowerBound.isProven() ? "" : " (estimated)")); //print the lower bound
+        System.out.println("GAP (in %): " + nearestNeighbour.getBestRoute().getGap(bound) * 100); //print the k-nn route's gap
+        if(targetGap >= 0) {
+            config.setTargetGap(bound, targetGap);
+        }
+
+        printImprovedRoute(localSearch, nearestNeighbour.getBestRoute(), bound); //improve k-nn route with 2-opt and Or-opt
+
         //Use Genetic Algorithm
         System.out.println("\nUSING GENETIC ALGORITHM");
         long gaStartTime = System.nanoTime(); //start time for genetic algorithm
 
-        GA geneticAlgo = new GA(cities); //call GA class and parse cities into constructor
+        GA geneticAlgo = new GA(distances); //call GA class and parse the cities and their distances into constructor
+        if(checkpoint == null) {
+            geneticAlgo.solve(config, SolverListener.NONE);
+        } else { //only this run is checkpointed, the island-model run below always starts afresh
+            geneticAlgo.solve(config.copy().setCheckpoint(Paths.get(checkpoint), CHECKPOINT_INTERVAL).setResume(resume), SolverListener.NONE);
+        }
 
         System.out.println("BEST ROUTE: " + geneticAlgo.getBestRoute().getRouteAsString()); //print the best route
         System.out.println("DISTANCE: " + geneticAlgo.getBestRoute().getDistance()); //print the distance
+        System.out.println("GAP (in %): " + geneticAlgo.getBestRoute().getGap(bound) * 100); //print the gap above the lower bound
 
         long gaEndTime   = System.nanoTime(); //stop time for genetic algorithm
 
         System.out.println("DURATION (in Seconds): " + (double)(gaEndTime - gaStartTime) / 1_000_000_000.0); //print duration in seconds
+
+        printImprovedRoute(localSearch, geneticAlgo.getBestRoute(), bound); //improve genetic algorithm route with 2-opt and Or-opt
+
+        //Use Island-Model Genetic Algorithm
+        System.out.println("\nUSING ISLAND-MODEL GENETIC ALGORITHM");
+        long islandStartTime = System.nanoTime(); //start time for island-model genetic algorithm
+
+        SolverConfig islandConfig = config.copy().setSeed(1L); //fixed seed, so every run with the same number of islands gives the same route
+        if(islands > 0) {
+            islandConfig.setIslands(islands);
+        }
+        IslandGA islandGA = new IslandGA(distances); //call IslandGA class and parse the cities and their distances into constructor
+        islandGA.solve(islandConfig, SolverListener.NONE);
+
+        System.out.println("SEED: 1, ISLANDS: " + islandGA.getNumOfIslands()); //print what reproduces the route, run with -islands to repeat it elsewhere
+
+        System.out.println("BEST ROUTE: " + islandGA.getBestRoute().getRouteAsString()); //print the best route
+        System.out.println("DISTANCE: " + islandGA.getBestRoute().getDistance()); //print the distance
+        System.out.println("GAP (in %): " + islandGA.getBestRoute().getGap(bound) * 100); //print the gap above the lower bound
+
+        long islandEndTime   = System.nanoTime(); //stop time for island-model genetic algorithm
+
+        System.out.println("DURATION (in Seconds): " + (double)(islandEndTime - islandStartTime) / 1_000_000_000.0); //print duration in seconds
+
+        if(trace != null) {
+            trace.close();
+        }
+    }
+
+    //run local search on a route and print the improved route, its distance, its gap above the lower bound and how long the improvement took
+    private static void printImprovedRoute(LocalSearch localSearch, Route route, double lowerBound) {
+        long lsStartTime = System.nanoTime(); //start time for local search
+        Route improved   = localSearch.improve(route);
+        long lsEndTime   = System.nanoTime(); //stop time for local search
+
+        System.out.println("\nAFTER 2-OPT / OR-OPT LOCAL SEARCH");
+        System.out.println("BEST ROUTE: " + improved.getRouteAsString()); //print the improved route
+        System.out.println("DISTANCE: " + improved.getDistance()); //print the distance
+        System.out.println("GAP (in %): " + improved.getGap(lowerBound) * 100); //print the gap above the lower bound
+        System.out.println("DURATION (in Seconds): " + (double)(lsEndTime - lsStartTime) / 1_000_000_000.0); //print duration in seconds
     }
 }
 
 //This class represents a city
 class City {
-    private final String name; //every city has a name
+    private final int index; //every city has an index, its position in the list of loaded cities
+    private final String name; //a name
     private final double xCoordinate; //a x coordinate
     private final double yCoordinate; //and a y coordinate
 
-    //constructor sets city name, x and y coordinates to the global variables
-    public City(String name, double xCoordinate, double yCoordinate) {
+    //constructor sets city index, name, x and y coordinates to the global variables
+    public City(int index, String name, double xCoordinate, double yCoordinate) {
+        this.index       = index;
         this.name        = name;
         this.xCoordinate = xCoordinate;
         this.yCoordinate = yCoordinate;
     }
 
+    public int getIndex() {
+        return this.index;
+    } //get the city's index
+
     public String getName() {
         return this.name;
     } //get the city's name
@@ -110,31 +212,62 @@ class City {
     } //get the city's y coordinate
 }
 
-//This class represents a Route
+//This class represents a Route, a tour through every city stored as a permutation of city indexes
 class Route implements Comparable<Route> {
     private final double fitness; //every Route has a fitness value
     private final double distance; //every Route has a distance
-    private final ArrayList<City> cities; //every Route consists of a list of cities
+    private final int[] tour; //every Route consists of the indexes of its cities, in the order they are travelled
+    private final Distances distances; //table of cities and distances between them, shared by every Route
+
+    //set global variables in Route constructor, the tour array is kept as it is and must not be changed afterwards
+    public Route (int[] tour, Distances distances) {
+        this.tour      = tour;
+        this.distances = distances;
+        this.distance  = distance();
+        this.fitness   = 1 / distance; //fitness will be the inverse of the distance, a higher fitness represents a shorter path
+    }
 
-    //set global variables in Route constructor
-    public Route (ArrayList<City> cities) {
-        this.cities   = cities;
-        this.distance = distance();
-        this.fitness  = 1 / distance; //fitness will be the inverse of the distance, a higher fitness represents a shorter path
+    //create a Route whose distance is already known, such as one worked out from the few edges that changed
+    Route (int[] tour, Distances distances, double distance) {
+        this.tour      = tour;
+        this.distances = distances;
+        this.distance  = distance;
+        this.fitness   = 1 / distance;
+    }
+
+    //create a Route from a list of cities, in the order they are travelled
+    public Route (List<City> cities, Distances distances) {
+        this(toTour(cities), distances);
     }
 
     //get the routes as names of all the cities concatenated by a comma
     public String getRouteAsString() {
         StringBuilder sb = new StringBuilder();
-        for (City city : cities) {
-            sb.append(city.getName()).append(", ");
+        for (int index : tour) {
+            sb.append(distances.getCity(index).getName()).append(", ");
         }
-        return sb.toString() + cities.get(0).getName(); //add name of first city to the end as tsp returns to starting point and return as string
+        return sb.toString() + distances.getCity(tour[0]).getName(); //add name of first city to the end as tsp returns to starting point and return as string
     }
 
     public ArrayList<City> getCities() {
+        ArrayList<City> cities = new ArrayList<City>(tour.length);
+        for (int index : tour) {
+            cities.add(distances.getCity(index));
+        }
         return cities;
-    } //get list of cities in Route
+    } //get a new list of cities in Route
+
+    public int[] getTour() {
+        return tour;
+    } //get city indexes in Route, the array is shared and must not be changed
+
+    public int size() {
+        return tour.length;
+    } //get number of cities in Route
+
+    public Distances getDistances() {
+        return distances;
+    } //get the cities and distances this Route was built from
 
     public double getFitness() {
         return fitness;
@@ -142,39 +275,31 @@ class Route implements Comparable<Route> {
 
     public double getDistance() { return distance; } //get distance of Route
 
+    //get how far the Route is above a lower bound on every tour's distance, as a share of the bound, 0.05 is 5% above it
+    //no tour is shorter than the bound, but the same tour summed from another city or the other way round can come out a
+    //rounding error shorter than the tour the bound was capped at, so a gap below 0 is reported as 0
+    public double getGap(double lowerBound) {
+        return Math.max(0, (distance - lowerBound) / lowerBound);
+    }
+
     //calculate distance
     private double distance() {
         double dist     = 0; //start distance as 0
-        int numOfCities = cities.size(); //set size of cities list as a local variable
-
-        //loop through all cities and calculate distance between two then add to total distance
-        for(int i = 1; i <= numOfCities; i++) {
-            if(i == numOfCities) {
-                //on last city, add distance between starting city and last city
-                dist += distanceBetweenTwo(
-                        cities.get(0).getxCoordinate(),
-                        cities.get(0).getyCoordinate(),
-                        cities.get(i - 1).getxCoordinate(),
-                        cities.get(i - 1).getyCoordinate()
-                );
-            } else {
-                //calculate distance between current city (in loop) and next city
-                dist += distanceBetweenTwo(
-                        cities.get(i - 1).getxCoordinate(),
-                        cities.get(i - 1).getyCoordinate(),
-                        cities.get(i).getxCoordinate(),
-                        cities.get(i).getyCoordinate()
-                );
-            }
+        int numOfCities = tour.length; //set number of cities as a local variable
+
+        //loop through all cities and add the distance between each city and the next, the last city connects back to the first
+        for(int i = 1; i < numOfCities; i++) {
+            dist += distances.between(tour[i - 1], tour[i]);
         }
-        return dist;
+        return dist + distances.between(tour[numOfCities - 1], tour[0]);
     }
 
-    //return distance between two points 1 and 2
-    private static double distanceBetweenTwo(double x1, double y1, double x2, double y2) {
-        double deltaX = x1 - x2;
-        double deltaY = y1 - y2;
-        return Math.sqrt((deltaX * deltaX) + (deltaY * deltaY));
+    private static int[] toTour(List<City> cities) {
+        int[] tour = new int[cities.size()];
+        for(int i = 0; i < tour.length; i++) {
+            tour[i] = cities.get(i).getIndex();
+        }
+        return tour;
     }
 
     //allows each route to be compared by fitness levels
@@ -182,4 +307,4 @@ class Route implements Comparable<Route> {
     public int compareTo(Route r) {
         return Double.compare(fitness, r.getFitness());
     }
-}
\ No newline at end of file
+}
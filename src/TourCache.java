@@ -0,0 +1,125 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//This class remembers the best tours found for the most recently solved instances, up to a fixed number of them
+//An instance is recognised by its set of city coordinates, whatever order its file lists the cities in and whatever they
+//are named: cities are put in a canonical order, sorted by x then y, and tours are kept as positions in that order,
+//so a tour found for one file is mapped back onto the cities of any other file holding the same cities
+//The key holds every coordinate as well as their hash, so two different instances with the same hash are never confused
+//Instances given as explicit weights have no coordinates to key them by and are never cached
+//Every method is synchronized, so one cache can be shared by the threads of a SolveService
+public final class TourCache {
+
+    private final LinkedHashMap<Key, CachedTour> entries; //kept in order of last use, least recently used first
+
+    public TourCache(int capacity) {
+        this.entries = new LinkedHashMap<Key, CachedTour>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedTour> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    //get the cached tour for an instance as a route over its own cities, or null if the instance isn't cached
+    public Route lookup(Distances distances) {
+        if(distances.isExplicit()) {
+            return null;
+        }
+        int[] order = canonicalOrder(distances);
+        CachedTour entry;
+        synchronized(this) {
+            entry = entries.get(new Key(distances, order));
+        }
+        if(entry == null) {
+            return null;
+        }
+        int[] tour = new int[entry.tour.length];
+        for(int i = 0; i < tour.length; i++) {
+            tour[i] = order[entry.tour[i]];
+        }
+        return new Route(tour, distances, entry.distance);
+    }
+
+    //remember a route as the tour for its instance, unless a shorter one is already cached
+    public void store(Route route) {
+        Distances distances = route.getDistances();
+        if(distances.isExplicit()) {
+            return;
+        }
+        int[] order = canonicalOrder(distances);
+        int[] rank  = new int[order.length]; //position of each city in the canonical order
+        for(int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+        int[] tour = new int[route.size()];
+        for(int i = 0; i < tour.length; i++) {
+            tour[i] = rank[route.getTour()[i]];
+        }
+        Key key = new Key(distances, order);
+        synchronized(this) {
+            CachedTour cached = entries.get(key);
+            if(cached == null || route.getDistance() < cached.distance) {
+                entries.put(key, new CachedTour(tour, route.getDistance()));
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    } //get number of instances cached
+
+    //city indexes sorted by x coordinate, then y coordinate
+    private static int[] canonicalOrder(Distances distances) {
+        Integer[] cities = new Integer[distances.size()];
+        for(int i = 0; i < cities.length; i++) {
+            cities[i] = i;
+        }
+        Arrays.sort(cities, Comparator.<Integer>comparingDouble(distances::getxCoordinate).thenComparingDouble(distances::getyCoordinate));
+        int[] order = new int[cities.length];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = cities[i];
+        }
+        return order;
+    }
+
+    //This class identifies an instance by its coordinates in canonical order and whether its distances are rounded
+    private static final class Key {
+        private final double[] coordinates; //x and y of every city, in canonical order
+        private final boolean rounded; //whether distances are rounded to whole numbers, the same cities then have other tours
+        private final int hash;
+
+        Key(Distances distances, int[] order) {
+            coordinates = new double[2 * order.length];
+            for(int i = 0; i < order.length; i++) {
+                coordinates[2 * i]     = distances.getxCoordinate(order[i]) + 0.0; //adding 0.0 turns -0.0 into 0.0, as the loader does
+                coordinates[2 * i + 1] = distances.getyCoordinate(order[i]) + 0.0;
+            }
+            rounded = distances.isRounded();
+            hash    = 31 * Arrays.hashCode(coordinates) + (rounded ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key)other).hash == hash && ((Key)other).rounded == rounded && Arrays.equals(((Key)other).coordinates, coordinates);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    //This class holds a cached tour, as positions in the canonical order of its instance's cities
+    private static final class CachedTour {
+        private final int[] tour;
+        private final double distance;
+
+        CachedTour(int[] tour, double distance) {
+            this.tour     = tour;
+            this.distance = distance;
+        }
+    }
+}
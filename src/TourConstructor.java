@@ -0,0 +1,264 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+//This class builds tours quickly, in about O(n log n), for seeding the GA and as starting tours for large instances
+//  Hilbert curve: visits cities in the order a space-filling curve passes them, cities close on the curve are close in the plane
+//  greedy edge: adds the shortest candidate edges that keep every city at two edges or less and close no cycle early,
+//               then joins the paths left over from end to nearest end
+//  randomized nearest neighbour: moves to one of the few nearest unvisited cities at random, so every tour is different
+//Cities without coordinates have no curve to follow, so their Hilbert tour is their index order, and nearest cities
+//outside the candidate lists are looked for one by one
+//One TourConstructor can be shared by threads, every tour is built with its own working arrays
+public final class TourConstructor {
+
+    private static final int HILBERT_ORDER  = 16; //curve fills a 2^16 by 2^16 grid
+    private static final int RANDOM_CHOICES = 3; //randomized nearest neighbour picks among the 3 nearest unvisited candidates
+
+    private final Distances distances;
+    private final CandidateLists candidates; //greedy edge only considers edges to these, nearest neighbour looks here first
+    private final KdTree kdTree; //finds nearest unvisited cities outside the candidate lists, null without coordinates
+    private final int numOfCities;
+
+    public TourConstructor(Distances distances, CandidateLists candidates) {
+        this.distances   = distances;
+        this.candidates  = candidates;
+        this.kdTree      = distances.hasCoordinates() ? new KdTree(distances) : null;
+        this.numOfCities = distances.size();
+    }
+
+    //cities in the order a Hilbert curve through their bounding box visits them
+    public int[] hilbert() {
+        if(!distances.hasCoordinates()) {
+            return identity();
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < numOfCities; i++) {
+            minX = Math.min(minX, distances.getxCoordinate(i));
+            minY = Math.min(minY, distances.getyCoordinate(i));
+            maxX = Math.max(maxX, distances.getxCoordinate(i));
+            maxY = Math.max(maxY, distances.getyCoordinate(i));
+        }
+        int side     = 1 << HILBERT_ORDER;
+        double scale = (side - 1) / Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_NORMAL); //same scale on both axes keeps the curve square
+        long[] keys  = new long[numOfCities]; //curve position in the high bits, city index in the low bits, so sorting orders cities by curve position
+        for(int i = 0; i < numOfCities; i++) {
+            int x   = (int)((distances.getxCoordinate(i) - minX) * scale);
+            int y   = (int)((distances.getyCoordinate(i) - minY) * scale);
+            keys[i] = (hilbertIndex(x, y, side) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] tour = new int[numOfCities];
+        for(int i = 0; i < numOfCities; i++) {
+            tour[i] = (int)keys[i];
+        }
+        return tour;
+    }
+
+    //tour built from the shortest candidate edges, as long as no city gets a third edge and no cycle closes before the end
+    public int[] greedyEdge() {
+        if(numOfCities < 4) {
+            return identity();
+        }
+        //sort candidate edges by length, float bits of a non-negative length sort in the same order as the length itself
+        int size     = candidates.size();
+        long[] edges = new long[numOfCities * size];
+        for(int a = 0, e = 0; a < numOfCities; a++) {
+            for(int i = 0; i < size; i++, e++) {
+                edges[e] = ((long)Float.floatToIntBits((float)distances.between(a, candidates.get(a, i))) << 32) | e;
+            }
+        }
+        Arrays.sort(edges);
+
+        int[] links  = new int[2 * numOfCities]; //the two cities each city is linked to, -1 while a link is free
+        int[] parent = new int[numOfCities]; //union-find over the paths built so far
+        int[] rank   = new int[numOfCities];
+        Arrays.fill(links, -1);
+        for(int i = 0; i < numOfCities; i++) {
+            parent[i] = i;
+        }
+        int added = 0;
+        for(int i = 0; i < edges.length && added < numOfCities - 1; i++) {
+            int e = (int)edges[i];
+            int a = e / size;
+            int b = candidates.get(a, e % size);
+            if(links[2 * a + 1] >= 0 || links[2 * b + 1] >= 0) {
+                continue; //a city already has both its edges
+            }
+            int rootA = find(parent, a);
+            int rootB = find(parent, b);
+            if(rootA == rootB) {
+                continue; //a and b are the two ends of one path, linking them would close a cycle early
+            }
+            if(rank[rootA] < rank[rootB]) { //union by rank keeps the trees shallow
+                parent[rootA] = rootB;
+            } else {
+                parent[rootB] = rootA;
+                if(rank[rootA] == rank[rootB]) {
+                    rank[rootA]++;
+                }
+            }
+            link(links, a, b);
+            added++;
+        }
+        joinPaths(links);
+        return walk(links);
+    }
+
+    //tour from a random starting city, moving each time to one of the nearest few unvisited candidates at random,
+    //or to the nearest unvisited city when every candidate has been visited
+    public int[] randomNearestNeighbour(SplittableRandom random) {
+        int[] tour           = new int[numOfCities];
+        boolean[] visited    = new boolean[numOfCities];
+        KdTree.Search search = kdTree == null ? null : kdTree.newSearch();
+        int[] choices        = new int[RANDOM_CHOICES];
+        tour[0]              = random.nextInt(numOfCities);
+        visited[tour[0]]     = true;
+        if(search != null) {
+            search.remove(tour[0]);
+        }
+        for(int i = 1; i < numOfCities; i++) {
+            int last  = tour[i - 1];
+            int count = 0;
+            for(int c = 0; c < candidates.size() && count < RANDOM_CHOICES; c++) {
+                int candidate = candidates.get(last, c);
+                if(!visited[candidate]) {
+                    choices[count++] = candidate;
+                }
+            }
+            int next;
+            if(count > 0) {
+                next = choices[random.nextInt(count)];
+            } else {
+                next = search != null ? search.nearest(last) : nearestUnvisited(last, visited);
+            }
+            tour[i]       = next;
+            visited[next] = true;
+            if(search != null) {
+                search.remove(next);
+            }
+        }
+        return tour;
+    }
+
+    //link the paths left by greedy edge into one cycle, from the far end of each path to the nearest end of another
+    private void joinPaths(int[] links) {
+        int[] otherEnd = new int[numOfCities]; //for each end of a path, the city at its other end
+        int firstEnd   = -1;
+        Arrays.fill(otherEnd, -1);
+        for(int city = 0; city < numOfCities; city++) {
+            if(links[2 * city + 1] < 0 && otherEnd[city] < 0) { //an end whose path hasn't been walked yet
+                int previous = -1;
+                int current  = city;
+                int next     = links[2 * city]; //an end has at most its first link filled
+                while(next >= 0) {
+                    previous = current;
+                    current  = next;
+                    next     = links[2 * current] != previous ? links[2 * current] : links[2 * current + 1];
+                }
+                otherEnd[city]    = current;
+                otherEnd[current] = city;
+                firstEnd          = firstEnd < 0 ? city : firstEnd;
+            }
+        }
+
+        //only ends are left in the search, every other city already has both its links
+        KdTree.Search search = kdTree == null ? null : kdTree.newSearch();
+        boolean[] used       = new boolean[numOfCities]; //ends already joined, or not an end at all
+        for(int city = 0; city < numOfCities; city++) {
+            used[city] = otherEnd[city] < 0;
+            if(used[city] && search != null) {
+                search.remove(city);
+            }
+        }
+        int tail = firstEnd;
+        while(true) {
+            used[tail]           = true;
+            used[otherEnd[tail]] = true;
+            if(search != null) {
+                search.remove(tail);
+                search.remove(otherEnd[tail]);
+            }
+            int end  = otherEnd[tail];
+            int next = search != null ? search.nearest(end) : nearestUnvisited(end, used);
+            if(next < 0) {
+                link(links, end, firstEnd); //every path is joined, close the cycle
+                return;
+            }
+            link(links, end, next);
+            tail = next;
+        }
+    }
+
+    //read the cycle in links into a tour, starting from city 0
+    private int[] walk(int[] links) {
+        int[] tour   = new int[numOfCities];
+        int previous = links[1]; //walk away from city 0's second link, so its first link comes next
+        int current  = 0;
+        for(int i = 0; i < numOfCities; i++) {
+            tour[i]  = current;
+            int next = links[2 * current] != previous ? links[2 * current] : links[2 * current + 1];
+            previous = current;
+            current  = next;
+        }
+        return tour;
+    }
+
+    //nearest city to the given one that isn't marked, looking through every city, or -1 if every city is marked
+    private int nearestUnvisited(int city, boolean[] marked) {
+        int nearest          = -1;
+        double nearestLength = Double.POSITIVE_INFINITY;
+        for(int other = 0; other < numOfCities; other++) {
+            if(!marked[other] && distances.between(city, other) < nearestLength) {
+                nearest       = other;
+                nearestLength = distances.between(city, other);
+            }
+        }
+        return nearest;
+    }
+
+    private int[] identity() {
+        int[] tour = new int[numOfCities];
+        for(int i = 0; i < numOfCities; i++) {
+            tour[i] = i;
+        }
+        return tour;
+    }
+
+    //fill the first free link of both cities with each other
+    private static void link(int[] links, int a, int b) {
+        links[links[2 * a] < 0 ? 2 * a : 2 * a + 1] = b;
+        links[links[2 * b] < 0 ? 2 * b : 2 * b + 1] = a;
+    }
+
+    //root of a city's path, halving the path to it along the way
+    private static int find(int[] parent, int city) {
+        while(parent[city] != city) {
+            parent[city] = parent[parent[city]];
+            city         = parent[city];
+        }
+        return city;
+    }
+
+    //position of the grid point (x, y) along the Hilbert curve filling a side by side grid
+    private static long hilbertIndex(int x, int y, int side) {
+        long index = 0;
+        for(int s = side >>> 1; s > 0; s >>>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long)s * s * ((3 * rx) ^ ry);
+            if(ry == 0) { //rotate the quadrant, so the curve inside it runs the right way
+                if(rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int swap = x;
+                x        = y;
+                y        = swap;
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+
+//This class holds a loaded instance: its cities, the distances between them, how many duplicate cities were dropped,
+//and its candidate lists when they were worked out while loading
+//Distances worked out from coordinates are only built the first time they are asked for, so an instance can be loaded,
+//such as to look its tour up in a TourCache, without paying for a matrix of every pair of cities
+public final class TspInstance {
+
+    private final String name; //name of the instance, the TSPLIB NAME or else the file name
+    private final ArrayList<City> cities; //cities that were kept, each at the position of its index
+    private Distances distances; //distances between the cities, null until asked for when they come from coordinates
+    private final boolean rounded; //whether distances from coordinates are rounded to whole numbers, as TSPLIB's EUC_2D
+    private final int duplicates; //number of cities dropped for having the same coordinates as an earlier city
+    private final CandidateLists candidates; //nearest cities to each city, null until worked out
+
+    //distances may be null for an instance measured from its coordinates, they are then built from the cities when first asked for
+    public TspInstance(String name, ArrayList<City> cities, Distances distances, int duplicates) {
+        this(name, cities, distances, duplicates, null);
+    }
+
+    public TspInstance(String name, ArrayList<City> cities, Distances distances, int duplicates, CandidateLists candidates) {
+        this(name, cities, distances, distances != null && distances.isRounded(), duplicates, candidates);
+    }
+
+    //rounded says how distances are built from the coordinates when they aren't given, and should agree with distances when they are
+    public TspInstance(String name, ArrayList<City> cities, Distances distances, boolean rounded, int duplicates, CandidateLists candidates) {
+        this.name       = name;
+        this.cities     = cities;
+        this.distances  = distances;
+        this.rounded    = rounded;
+        this.duplicates = duplicates;
+        this.candidates = candidates;
+    }
+
+    public String getName() {
+        return name;
+    } //get the instance's name
+
+    public ArrayList<City> getCities() {
+        return cities;
+    } //get the list of cities
+
+    //get the distances between cities, building them from the cities' coordinates the first time
+    public synchronized Distances getDistances() {
+        if(distances == null) {
+            distances = new Distances(cities, false, rounded);
+        }
+        return distances;
+    }
+
+    public synchronized boolean isExplicit() {
+        return distances != null && distances.isExplicit();
+    } //check if distances were given with the instance, rather than worked out from the cities' coordinates
+
+    public boolean isRounded() {
+        return rounded;
+    } //check if distances worked out from coordinates are rounded to the nearest whole number
+
+    public int getDuplicates() {
+        return duplicates;
+    } //get number of duplicate cities dropped while loading
+
+    public CandidateLists getCandidates() {
+        return candidates;
+    } //get the candidate lists, or null when they weren't worked out while loading
+}